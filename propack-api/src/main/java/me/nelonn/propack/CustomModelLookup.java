@@ -0,0 +1,370 @@
+/*
+ * This file is part of ProPack, a Minecraft resource pack toolkit
+ * Copyright (C) Michael Neonov <two.nelonn@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.nelonn.propack;
+
+import me.nelonn.flint.path.Key;
+import me.nelonn.flint.path.Path;
+import me.nelonn.propack.asset.CombinedItemModel;
+import me.nelonn.propack.asset.DefaultItemModel;
+import me.nelonn.propack.asset.ItemModel;
+import me.nelonn.propack.asset.SlotItemModel;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Resolves item models to custom model data without building mesh paths.
+ * Models are indexed by their custom model string up front, results per item and
+ * element selection are kept in a fixed size table, so memory stays bounded however many combinations are seen.
+ */
+public final class CustomModelLookup {
+    public static final int DEFAULT_CACHE_SIZE = 4096;
+    private final Map<String, Model> models = new HashMap<>();
+    private final Meshes meshes;
+    // direct-mapped, a colliding result replaces the previous one. Entries are immutable, so racing writes are harmless.
+    // Null when caching is disabled
+    private final Entry[] cache;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private int modelCount;
+
+    public CustomModelLookup(@NotNull Iterable<ItemModel> itemModels, @NotNull Meshes meshes) {
+        this(itemModels, meshes, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param cacheSize number of cached results, rounded up to a power of two, 0 disables caching
+     */
+    public CustomModelLookup(@NotNull Iterable<ItemModel> itemModels, @NotNull Meshes meshes, int cacheSize) {
+        this.meshes = meshes;
+        this.cache = cacheSize > 0 ? new Entry[Integer.highestOneBit(Math.max(1, cacheSize - 1)) << 1] : null;
+        for (ItemModel itemModel : itemModels) {
+            Model model;
+            if (itemModel instanceof DefaultItemModel) {
+                model = new Model(itemModel);
+            } else if (itemModel instanceof CombinedItemModel) {
+                model = new CombinedModel((CombinedItemModel) itemModel);
+            } else if (itemModel instanceof SlotItemModel) {
+                model = new SlotModel((SlotItemModel) itemModel);
+            } else {
+                continue;
+            }
+            models.put(itemModel.friendlyPath().toString(), model);
+        }
+    }
+
+    /**
+     * @param customModel custom model string of an item
+     * @return model or null if there is no such model
+     */
+    public @Nullable Model model(@NotNull String customModel) {
+        Model model = models.get(customModel);
+        if (model == null && customModel.indexOf(':') == -1) {
+            try {
+                model = models.get(Path.of(customModel).toString());
+            } catch (Exception ignored) {
+            }
+        }
+        return model;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return number of cached results replaced by a colliding one
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return number of cached results
+     */
+    public int getCacheSize() {
+        int size = 0;
+        if (cache == null) return size;
+        for (Entry entry : cache) {
+            if (entry != null) size++;
+        }
+        return size;
+    }
+
+    private @Nullable Result cached(@NotNull Model model, @NotNull Key itemId, long selection) {
+        if (cache == null) return null;
+        Entry entry = cache[index(model, itemId, selection)];
+        if (entry != null && entry.matches(model, itemId, selection)) {
+            hits.increment();
+            return entry.result;
+        }
+        misses.increment();
+        return null;
+    }
+
+    private @NotNull Result cache(@NotNull Model model, @NotNull Key itemId, long selection, @NotNull Result result) {
+        if (cache == null) return result;
+        int index = index(model, itemId, selection);
+        Entry previous = cache[index];
+        if (previous != null && !previous.matches(model, itemId, selection)) {
+            evictions.increment();
+        }
+        cache[index] = new Entry(model, itemId, selection, result);
+        return result;
+    }
+
+    private int index(@NotNull Model model, @NotNull Key itemId, long selection) {
+        int hash = (model.id * 31 + itemId.hashCode()) * 31 + Long.hashCode(selection);
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        return hash & (cache.length - 1);
+    }
+
+    public class Model {
+        private final ItemModel itemModel;
+        private final int id = modelCount++;
+
+        private Model(@NotNull ItemModel itemModel) {
+            this.itemModel = itemModel;
+        }
+
+        public @NotNull ItemModel getItemModel() {
+            return itemModel;
+        }
+
+        /**
+         * @return result for the model without elements
+         */
+        public @NotNull Result resolve(@NotNull Key itemId) {
+            // selection 0 is the model without elements for every model type
+            Result result = cached(this, itemId, 0L);
+            return result != null ? result : cache(this, itemId, 0L, compute(itemId, getBaseMesh()));
+        }
+
+        protected @NotNull Path getBaseMesh() {
+            return ((DefaultItemModel) itemModel).getMesh();
+        }
+
+        protected @NotNull Result compute(@NotNull Key itemId, @NotNull Path mesh) {
+            if (!itemModel.getTargetItems().contains(itemId)) {
+                return new Result(mesh, false, null, null);
+            }
+            Integer cmd = meshes.getCustomModelData(mesh, itemId);
+            Path newItemModel = cmd == null ? null : Path.of("propack", itemId.value() + "." + Integer.toHexString(cmd));
+            return new Result(mesh, true, cmd, newItemModel);
+        }
+    }
+
+    public final class CombinedModel extends Model {
+        private final CombinedItemModel combinedModel;
+        private final Map<String, Integer> bits = new HashMap<>();
+
+        private CombinedModel(@NotNull CombinedItemModel combinedModel) {
+            super(combinedModel);
+            this.combinedModel = combinedModel;
+            List<String> elements = new ArrayList<>(combinedModel.getElements());
+            Collections.sort(elements);
+            if (elements.size() < Long.SIZE) {
+                for (int i = 0; i < elements.size(); i++) {
+                    bits.put(elements.get(i), i);
+                }
+            }
+        }
+
+        @Override
+        protected @NotNull Path getBaseMesh() {
+            return combinedModel.getBaseMesh();
+        }
+
+        /**
+         * Combinations pruned by the model constraints resolve without custom model data.
+         *
+         * @throws IllegalArgumentException if the model does not contain one of the elements
+         */
+        public @NotNull Result resolve(@NotNull Key itemId, @NotNull Collection<String> elements) {
+            if (elements.isEmpty()) return resolve(itemId);
+            long mask = 0L;
+            for (String element : elements) {
+                Integer bit = bits.get(element);
+                if (bit == null || (mask & 1L << bit) != 0L) {
+                    // unknown or repeated element, or too many elements for a mask, let the model decide
+                    return computeCombination(itemId, elements);
+                }
+                mask |= 1L << bit;
+            }
+            Result result = cached(this, itemId, mask);
+            return result != null ? result : cache(this, itemId, mask, computeCombination(itemId, elements));
+        }
+
+        private @NotNull Result computeCombination(@NotNull Key itemId, @NotNull Collection<String> elements) {
+            if (!combinedModel.getConstraints().allows(elements)) {
+                for (String element : elements) {
+                    if (!combinedModel.hasElement(element)) {
+                        throw new IllegalArgumentException(combinedModel + " does not contain element '" + element + "'");
+                    }
+                }
+                return new Result(getBaseMesh(), combinedModel.getTargetItems().contains(itemId), null, null);
+            }
+            return compute(itemId, combinedModel.getMesh(elements.toArray(new String[0])));
+        }
+    }
+
+    public final class SlotModel extends Model {
+        private final SlotItemModel slotModel;
+        private final String[] slotNames;
+        private final List<Map<String, Integer>> entryIndexes = new ArrayList<>();
+        private final long[] radices;
+
+        private SlotModel(@NotNull SlotItemModel slotModel) {
+            super(slotModel);
+            this.slotModel = slotModel;
+            List<String> names = new ArrayList<>();
+            for (SlotItemModel.Slot slot : slotModel.getSlots()) {
+                names.add(slot.getName());
+            }
+            Collections.sort(names);
+            this.slotNames = names.toArray(new String[0]);
+            this.radices = new long[slotNames.length];
+            long radix = 1L;
+            for (int i = 0; i < slotNames.length; i++) {
+                SlotItemModel.Slot slot = Objects.requireNonNull(slotModel.getSlot(slotNames[i]));
+                List<String> entries = new ArrayList<>(slot.getEntries());
+                Collections.sort(entries);
+                Map<String, Integer> indexes = new HashMap<>();
+                for (int j = 0; j < entries.size(); j++) {
+                    indexes.put(entries.get(j), j + 1); // 0 is an empty slot
+                }
+                entryIndexes.add(indexes);
+                radices[i] = radix;
+                // radix 0 disables the table when the combinations do not fit in a long
+                radix = radix == 0L || entries.size() + 1 > Long.MAX_VALUE / radix ? 0L : radix * (entries.size() + 1);
+            }
+        }
+
+        @Override
+        protected @NotNull Path getBaseMesh() {
+            return slotModel.getBaseMesh();
+        }
+
+        /**
+         * @return slot names, sorted
+         */
+        public @NotNull List<String> getSlotNames() {
+            return Collections.unmodifiableList(Arrays.asList(slotNames));
+        }
+
+        /**
+         * @param slotElements element in a slot by slot name, null or empty if the slot is empty
+         * @throws IllegalArgumentException if a slot does not contain the element
+         */
+        public @NotNull Result resolve(@NotNull Key itemId, @NotNull Function<String, String> slotElements) {
+            long index = 0L;
+            boolean indexed = true;
+            for (int i = 0; i < slotNames.length; i++) {
+                String element = slotElements.apply(slotNames[i]);
+                if (element == null || element.isEmpty()) continue;
+                Integer entryIndex = entryIndexes.get(i).get(element);
+                if (entryIndex == null || radices[i] == 0L) {
+                    indexed = false;
+                    break;
+                }
+                index += entryIndex * radices[i];
+            }
+            if (!indexed) {
+                return compute(itemId, slotModel.getMesh(collect(slotElements)));
+            }
+            if (index == 0L) return resolve(itemId);
+            Result result = cached(this, itemId, index);
+            return result != null ? result : cache(this, itemId, index, compute(itemId, slotModel.getMesh(collect(slotElements))));
+        }
+
+        private Map<String, String> collect(Function<String, String> slotElements) {
+            Map<String, String> slots = new HashMap<>();
+            for (String slotName : slotNames) {
+                String element = slotElements.apply(slotName);
+                if (element == null || element.isEmpty()) continue;
+                slots.put(slotName, element);
+            }
+            return slots;
+        }
+    }
+
+    private static final class Entry {
+        private final Model model;
+        private final Key itemId;
+        private final long selection;
+        private final Result result;
+
+        private Entry(@NotNull Model model, @NotNull Key itemId, long selection, @NotNull Result result) {
+            this.model = model;
+            this.itemId = itemId;
+            this.selection = selection;
+            this.result = result;
+        }
+
+        private boolean matches(@NotNull Model model, @NotNull Key itemId, long selection) {
+            return this.model == model && this.selection == selection && this.itemId.equals(itemId);
+        }
+    }
+
+    public static final class Result {
+        private final Path mesh;
+        private final boolean targetItem;
+        private final Integer customModelData;
+        private final Path newItemModel;
+
+        private Result(@NotNull Path mesh, boolean targetItem, @Nullable Integer customModelData, @Nullable Path newItemModel) {
+            this.mesh = mesh;
+            this.targetItem = targetItem;
+            this.customModelData = customModelData;
+            this.newItemModel = newItemModel;
+        }
+
+        public @NotNull Path getMesh() {
+            return mesh;
+        }
+
+        /**
+         * @return false if the item is not a target item of the model
+         */
+        public boolean isTargetItem() {
+            return targetItem;
+        }
+
+        public @Nullable Integer getCustomModelData() {
+            return customModelData;
+        }
+
+        /**
+         * @return generated item model for the custom model data, or null if not found
+         */
+        public @Nullable Path getNewItemModel() {
+            return newItemModel;
+        }
+    }
+}
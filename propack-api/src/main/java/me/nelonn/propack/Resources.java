@@ -29,17 +29,36 @@ import org.jetbrains.annotations.Nullable;
 import java.util.*;
 
 public class Resources {
+    public static final int ITEM_MODELS = 1;
+    public static final int SOUNDS = 1 << 1;
+    public static final int ARMOR_TEXTURES = 1 << 2;
+    public static final int FONTS = 1 << 3;
+
     private final Map<Path, ItemModel> itemModels;
     private final Map<Path, SoundAsset> sounds;
     private final Map<Path, ArmorTexture> armorTextures;
     private final Map<Path, Font> fonts;
     private final Meshes meshes;
+    private final CustomModelLookup customModelLookup;
+    private final int contents;
 
     public Resources(@NotNull Iterable<ItemModel> itemModels,
                      @NotNull Iterable<SoundAsset> sounds,
                      @NotNull Iterable<ArmorTexture> armorTextures,
                      @NotNull Iterable<Font> fonts,
                      @NotNull Meshes meshes) {
+        this(itemModels, sounds, armorTextures, fonts, meshes, CustomModelLookup.DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param lookupCacheSize number of cached custom model lookups, 0 disables caching
+     */
+    public Resources(@NotNull Iterable<ItemModel> itemModels,
+                     @NotNull Iterable<SoundAsset> sounds,
+                     @NotNull Iterable<ArmorTexture> armorTextures,
+                     @NotNull Iterable<Font> fonts,
+                     @NotNull Meshes meshes,
+                     int lookupCacheSize) {
         this.itemModels = new HashMap<>();
         itemModels.forEach(asset -> this.itemModels.put(asset.friendlyPath(), asset));
         this.sounds = new HashMap<>();
@@ -49,6 +68,19 @@ public class Resources {
         this.fonts = new HashMap<>();
         fonts.forEach(asset -> this.fonts.put(asset.friendlyPath(), asset));
         this.meshes = meshes;
+        this.customModelLookup = new CustomModelLookup(this.itemModels.values(), meshes, lookupCacheSize);
+        this.contents = (this.itemModels.isEmpty() ? 0 : ITEM_MODELS)
+                | (this.sounds.isEmpty() ? 0 : SOUNDS)
+                | (this.armorTextures.isEmpty() ? 0 : ARMOR_TEXTURES)
+                | (this.fonts.isEmpty() ? 0 : FONTS);
+    }
+
+    /**
+     * @param contents any of {@link #ITEM_MODELS}, {@link #SOUNDS}, {@link #ARMOR_TEXTURES}, {@link #FONTS}
+     * @return true if at least one of the given asset types is present
+     */
+    public boolean contains(int contents) {
+        return (this.contents & contents) != 0;
     }
 
     public @Nullable ItemModel itemModel(@NotNull Path path) {
@@ -86,4 +118,8 @@ public class Resources {
     public @NotNull Meshes getMeshes() {
         return meshes;
     }
+
+    public @NotNull CustomModelLookup getCustomModelLookup() {
+        return customModelLookup;
+    }
 }
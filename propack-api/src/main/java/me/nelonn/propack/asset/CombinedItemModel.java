@@ -22,21 +22,32 @@ import me.nelonn.flint.path.Key;
 import me.nelonn.flint.path.Path;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.Set;
+import java.util.*;
 
 public class CombinedItemModel extends MultiItemModel {
     private final Set<String> elements;
+    private final Constraints constraints;
 
     public CombinedItemModel(@NotNull Path path, @NotNull Set<Key> targetItems,
                              @NotNull Path baseMesh, @NotNull Set<String> elements) {
+        this(path, targetItems, baseMesh, elements, Constraints.NONE);
+    }
+
+    public CombinedItemModel(@NotNull Path path, @NotNull Set<Key> targetItems,
+                             @NotNull Path baseMesh, @NotNull Set<String> elements, @NotNull Constraints constraints) {
         super(path, targetItems, baseMesh);
         this.elements = Collections.unmodifiableSet(elements);
+        this.constraints = constraints;
     }
 
+    /**
+     * @throws IllegalArgumentException if an element is unknown or the combination was pruned by the constraints
+     */
     public @NotNull Path getMesh(String... elements) {
         if (elements.length == 0) return baseMesh;
+        if (!constraints.allows(Arrays.asList(elements))) {
+            throw new IllegalArgumentException(this + " does not allow combination " + Arrays.toString(elements));
+        }
         StringBuilder sb = new StringBuilder();
         Arrays.stream(elements).sorted().forEach(s -> {
             if (!this.elements.contains(s)) {
@@ -58,4 +69,95 @@ public class CombinedItemModel extends MultiItemModel {
     public boolean hasElement(@NotNull String element) {
         return elements.contains(element);
     }
+
+    public @NotNull Constraints getConstraints() {
+        return constraints;
+    }
+
+    /**
+     * Limits which element combinations get a generated mesh, the base mesh is always available.
+     */
+    public static class Constraints {
+        public static final Constraints NONE = new Constraints(0, Collections.emptyList(),
+                Collections.emptySet(), Collections.emptySet());
+
+        private final int maxElements;
+        private final List<Set<String>> exclusiveGroups;
+        private final Set<String> required;
+        private final Set<Set<String>> whitelist;
+
+        /**
+         * @param maxElements     most elements in one combination, 0 for no limit
+         * @param exclusiveGroups groups of which a combination contains at most one element
+         * @param required        elements every combination contains
+         * @param whitelist       the only allowed combinations, empty to allow all
+         */
+        public Constraints(int maxElements, @NotNull Collection<? extends Set<String>> exclusiveGroups,
+                           @NotNull Set<String> required, @NotNull Collection<? extends Set<String>> whitelist) {
+            this.maxElements = maxElements;
+            List<Set<String>> groups = new ArrayList<>();
+            for (Set<String> group : exclusiveGroups) {
+                groups.add(Collections.unmodifiableSet(new HashSet<>(group)));
+            }
+            this.exclusiveGroups = Collections.unmodifiableList(groups);
+            this.required = Collections.unmodifiableSet(new HashSet<>(required));
+            Set<Set<String>> combinations = new HashSet<>();
+            for (Set<String> combination : whitelist) {
+                combinations.add(Collections.unmodifiableSet(new HashSet<>(combination)));
+            }
+            this.whitelist = Collections.unmodifiableSet(combinations);
+        }
+
+        public int getMaxElements() {
+            return maxElements;
+        }
+
+        public @NotNull List<Set<String>> getExclusiveGroups() {
+            return exclusiveGroups;
+        }
+
+        public @NotNull Set<String> getRequired() {
+            return required;
+        }
+
+        public @NotNull Set<Set<String>> getWhitelist() {
+            return whitelist;
+        }
+
+        public boolean isEmpty() {
+            return maxElements <= 0 && exclusiveGroups.isEmpty() && required.isEmpty() && whitelist.isEmpty();
+        }
+
+        /**
+         * @param elements non-empty combination of elements
+         * @return false if the combination was pruned and has no mesh
+         */
+        public boolean allows(@NotNull Collection<String> elements) {
+            if (isEmpty()) return true;
+            Set<String> combination = elements instanceof Set ? (Set<String>) elements : new HashSet<>(elements);
+            if (maxElements > 0 && combination.size() > maxElements) return false;
+            if (!combination.containsAll(required)) return false;
+            for (Set<String> group : exclusiveGroups) {
+                int count = 0;
+                for (String element : group) {
+                    if (combination.contains(element) && ++count > 1) return false;
+                }
+            }
+            return whitelist.isEmpty() || whitelist.contains(combination);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Constraints that = (Constraints) o;
+            return maxElements == that.maxElements && exclusiveGroups.equals(that.exclusiveGroups)
+                    && required.equals(that.required) && whitelist.equals(that.whitelist);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(maxElements, exclusiveGroups, required, whitelist);
+        }
+    }
 }
@@ -33,6 +33,20 @@ dependencies {
     compileOnly("org.apache.commons:commons-lang3:3.12.0")
 
     compileOnly("org.jetbrains:annotations:24.1.0")
+
+    testImplementation("org.junit.jupiter:junit-jupiter:5.10.2")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+    testImplementation(files("../libs/flint-path-0.0.1.jar"))
+    testImplementation("org.slf4j:slf4j-api:2.0.7")
+    testImplementation("net.kyori:adventure-api:$adventureVersion")
+    testImplementation("net.kyori:adventure-text-minimessage:$adventureVersion")
+    testImplementation("net.kyori:adventure-text-serializer-legacy:$adventureVersion")
+    testImplementation("net.kyori:adventure-text-serializer-gson:$adventureVersion")
+    testImplementation("com.google.code.gson:gson:2.10.1")
+    testImplementation("com.google.guava:guava:33.0.0-jre")
+    testImplementation("commons-io:commons-io:2.14.0")
+    testImplementation("org.apache.commons:commons-lang3:3.12.0")
+    testImplementation("org.jetbrains:annotations:24.1.0")
 }
 
 tasks.register("buildGo") {
@@ -98,4 +112,8 @@ tasks {
     assemble {
         dependsOn("shadowJar")
     }
+
+    test {
+        useJUnitPlatform()
+    }
 }
@@ -19,6 +19,7 @@
 package me.nelonn.propack.builder.api.file;
 
 import com.google.gson.JsonObject;
+import me.nelonn.propack.core.util.GsonHelper;
 import me.nelonn.propack.core.util.Util;
 import org.jetbrains.annotations.NotNull;
 
@@ -39,9 +40,15 @@ public class JsonFile extends AbstractFile implements MutableFile<JsonObject> {
         this(path, content, StandardCharsets.UTF_8);
     }
 
+    // content is provided later by getContent() of the subclass
+    protected JsonFile(@NotNull String path, @NotNull Charset charset) {
+        super(path.endsWith(".json5") || path.endsWith(".jsonc") ? Util.substringLast(path, 1) : path);
+        this.charset = charset;
+    }
+
     @Override
     public @NotNull JsonFile copyAs(@NotNull String path) {
-        return new JsonFile(path, content.deepCopy());
+        return new JsonFile(path, getContent().deepCopy());
     }
 
     @Override
@@ -51,7 +58,14 @@ public class JsonFile extends AbstractFile implements MutableFile<JsonObject> {
 
     @Override
     public byte[] getBytes() {
-        return content.toString().getBytes(charset);
+        return getContent().toString().getBytes(charset);
+    }
+
+    /**
+     * @return content serialized with sorted object keys, equal content always gives equal bytes
+     */
+    public byte[] getCanonicalBytes() {
+        return GsonHelper.sortKeys(getContent()).toString().getBytes(charset);
     }
 
     @Override
@@ -59,6 +73,10 @@ public class JsonFile extends AbstractFile implements MutableFile<JsonObject> {
         return content;
     }
 
+    protected @NotNull Charset getCharset() {
+        return charset;
+    }
+
     @Override
     public void setContent(@NotNull JsonObject content) {
         this.content = content;
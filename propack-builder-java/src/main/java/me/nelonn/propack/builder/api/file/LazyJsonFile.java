@@ -0,0 +1,129 @@
+/*
+ * This file is part of ProPack, a Minecraft resource pack toolkit
+ * Copyright (C) Michael Neonov <two.nelonn@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.nelonn.propack.builder.api.file;
+
+import com.google.gson.JsonObject;
+import me.nelonn.propack.core.util.GsonHelper;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Json file backed by a file on disk, parsed on the first {@link #getContent()}.
+ * Until then the source is packaged by streaming it to compact json, without building the tree.
+ */
+public class LazyJsonFile extends JsonFile {
+    private final java.io.File source;
+    private final Parser parser;
+    private volatile boolean loaded;
+
+    public LazyJsonFile(@NotNull String path, @NotNull java.io.File source, @NotNull Parser parser, @NotNull Charset charset) {
+        super(path, charset);
+        this.source = source;
+        this.parser = parser;
+    }
+
+    public LazyJsonFile(@NotNull String path, @NotNull java.io.File source, @NotNull Parser parser) {
+        this(path, source, parser, StandardCharsets.UTF_8);
+    }
+
+    public @NotNull java.io.File getSource() {
+        return source;
+    }
+
+    /**
+     * @return true if the content was parsed or replaced, the source is not used anymore
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    @Override
+    public @NotNull JsonFile copyAs(@NotNull String path) {
+        if (!loaded) {
+            return new LazyJsonFile(path, source, parser, getCharset());
+        }
+        return super.copyAs(path);
+    }
+
+    @Override
+    public @NotNull InputStream openInputStream() {
+        byte[] compact = compactSource();
+        if (compact != null) return new ByteArrayInputStream(compact);
+        return super.openInputStream();
+    }
+
+    @Override
+    public byte[] getBytes() {
+        byte[] compact = compactSource();
+        if (compact != null) return compact;
+        return super.getBytes();
+    }
+
+    @Override
+    public byte[] getCanonicalBytes() {
+        // the same source always gives the same bytes
+        byte[] compact = compactSource();
+        if (compact != null) return compact;
+        return super.getCanonicalBytes();
+    }
+
+    // null if the content is loaded or the source has to be parsed, which also reports syntax errors
+    private byte @Nullable [] compactSource() {
+        if (loaded) return null;
+        StringWriter output = new StringWriter((int) Math.min(source.length(), 1 << 20));
+        try (Reader reader = new InputStreamReader(Files.newInputStream(source.toPath()), StandardCharsets.UTF_8)) {
+            if (!GsonHelper.writeCompact(reader, output)) return null;
+        } catch (Exception e) {
+            return null;
+        }
+        return output.toString().getBytes(getCharset());
+    }
+
+    @Override
+    public @NotNull JsonObject getContent() {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) {
+                    try {
+                        super.setContent(parser.parse(source));
+                    } catch (Exception e) {
+                        throw new IllegalArgumentException("Something went wrong when parsing '" + source + "'", e);
+                    }
+                    loaded = true;
+                }
+            }
+        }
+        return super.getContent();
+    }
+
+    @Override
+    public synchronized void setContent(@NotNull JsonObject content) {
+        super.setContent(content);
+        loaded = true;
+    }
+
+    public interface Parser {
+        @NotNull JsonObject parse(@NotNull java.io.File source) throws IOException;
+    }
+}
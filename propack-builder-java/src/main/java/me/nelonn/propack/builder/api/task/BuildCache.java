@@ -0,0 +1,67 @@
+/*
+ * This file is part of ProPack, a Minecraft resource pack toolkit
+ * Copyright (C) Michael Neonov <two.nelonn@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.nelonn.propack.builder.api.task;
+
+import me.nelonn.propack.Sha1;
+import me.nelonn.propack.builder.api.file.File;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+
+/**
+ * Persistent state shared between builds of the same project.
+ */
+public interface BuildCache {
+
+    /**
+     * @return false if incremental builds are disabled, {@link #getOutput(String, Sha1)} returns null then
+     * and there is no point in computing cache keys
+     */
+    boolean isEnabled();
+
+    /**
+     * @return SHA-1 of the file content, rehashed only when size or modification time changed
+     */
+    @NotNull Sha1 fingerprint(@NotNull java.io.File file) throws IOException;
+
+    @NotNull Sha1 fingerprint(@NotNull File file) throws IOException;
+
+    /**
+     * Records the hash of a file that was just written, so the next {@link #fingerprint(java.io.File)} does not read it
+     */
+    void putFingerprint(@NotNull java.io.File file, @NotNull Sha1 sha1);
+
+    /**
+     * Keeps the loaded value in memory until the file size or modification time changes.
+     * Returned values are shared, copy them before mutating.
+     */
+    <T> @NotNull T memoize(@NotNull java.io.File file, @NotNull Loader<T> loader) throws IOException;
+
+    /**
+     * @param owner usually the task name
+     * @param key hash of every input the output depends on
+     * @return location of the cached output, which may not exist yet, or null if caching is disabled
+     */
+    @Nullable java.io.File getOutput(@NotNull String owner, @NotNull Sha1 key);
+
+    interface Loader<T> {
+        @NotNull T load(@NotNull java.io.File file) throws IOException;
+    }
+}
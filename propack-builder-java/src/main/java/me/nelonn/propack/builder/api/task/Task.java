@@ -20,6 +20,7 @@ package me.nelonn.propack.builder.api.task;
 
 import me.nelonn.propack.builder.api.Project;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public interface Task {
 
@@ -29,4 +30,11 @@ public interface Task {
 
     void run(@NotNull TaskIO io) throws Exception;
 
+    /**
+     * @return what this task touches, or null to run it exclusively in declaration order
+     */
+    default @Nullable TaskAccess getAccess() {
+        return null;
+    }
+
 }
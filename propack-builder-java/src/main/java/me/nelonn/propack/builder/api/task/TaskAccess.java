@@ -0,0 +1,162 @@
+/*
+ * This file is part of ProPack, a Minecraft resource pack toolkit
+ * Copyright (C) Michael Neonov <two.nelonn@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.nelonn.propack.builder.api.task;
+
+import me.nelonn.propack.builder.api.util.Extra;
+import me.nelonn.propack.builder.api.util.PathPattern;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * Declares which files, extras and assets a task reads and writes so independent tasks can run concurrently.
+ * Writing implies reading.
+ */
+public final class TaskAccess {
+
+    public static @NotNull Builder builder() {
+        return new Builder();
+    }
+
+    private final Set<PathPattern> readFiles;
+    private final Set<PathPattern> writeFiles;
+    private final Set<Extra<?>> readExtras;
+    private final Set<Extra<?>> writeExtras;
+    private final Set<AssetKind> readAssets;
+    private final Set<AssetKind> writeAssets;
+
+    private TaskAccess(@NotNull Builder builder) {
+        this.readFiles = Collections.unmodifiableSet(new LinkedHashSet<>(builder.readFiles));
+        this.writeFiles = Collections.unmodifiableSet(new LinkedHashSet<>(builder.writeFiles));
+        this.readExtras = Collections.unmodifiableSet(new LinkedHashSet<>(builder.readExtras));
+        this.writeExtras = Collections.unmodifiableSet(new LinkedHashSet<>(builder.writeExtras));
+        this.readAssets = Collections.unmodifiableSet(EnumSet.copyOf(builder.readAssets));
+        this.writeAssets = Collections.unmodifiableSet(EnumSet.copyOf(builder.writeAssets));
+    }
+
+    public @NotNull Set<PathPattern> getReadFiles() {
+        return readFiles;
+    }
+
+    public @NotNull Set<PathPattern> getWriteFiles() {
+        return writeFiles;
+    }
+
+    public @NotNull Set<Extra<?>> getReadExtras() {
+        return readExtras;
+    }
+
+    public @NotNull Set<Extra<?>> getWriteExtras() {
+        return writeExtras;
+    }
+
+    public @NotNull Set<AssetKind> getReadAssets() {
+        return readAssets;
+    }
+
+    public @NotNull Set<AssetKind> getWriteAssets() {
+        return writeAssets;
+    }
+
+    public boolean conflictsWith(@NotNull TaskAccess other) {
+        return writesAny(other.readFiles, other.writeFiles, other.readExtras, other.writeExtras, other.readAssets, other.writeAssets)
+                || other.writesAny(readFiles, writeFiles, readExtras, writeExtras, readAssets, writeAssets);
+    }
+
+    private boolean writesAny(Set<PathPattern> files, Set<PathPattern> moreFiles, Set<Extra<?>> extras,
+                              Set<Extra<?>> moreExtras, Set<AssetKind> assets, Set<AssetKind> moreAssets) {
+        for (PathPattern written : writeFiles) {
+            for (PathPattern pattern : files) {
+                if (written.overlaps(pattern)) return true;
+            }
+            for (PathPattern pattern : moreFiles) {
+                if (written.overlaps(pattern)) return true;
+            }
+        }
+        for (Extra<?> written : writeExtras) {
+            if (extras.contains(written) || moreExtras.contains(written)) return true;
+        }
+        for (AssetKind written : writeAssets) {
+            if (assets.contains(written) || moreAssets.contains(written)) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "TaskAccess{" +
+                "readFiles=" + readFiles +
+                ", writeFiles=" + writeFiles +
+                ", readExtras=" + readExtras.size() +
+                ", writeExtras=" + writeExtras.size() +
+                ", readAssets=" + readAssets +
+                ", writeAssets=" + writeAssets +
+                '}';
+    }
+
+    public static class Builder {
+        private final Set<PathPattern> readFiles = new LinkedHashSet<>();
+        private final Set<PathPattern> writeFiles = new LinkedHashSet<>();
+        private final Set<Extra<?>> readExtras = new LinkedHashSet<>();
+        private final Set<Extra<?>> writeExtras = new LinkedHashSet<>();
+        private final Set<AssetKind> readAssets = EnumSet.noneOf(AssetKind.class);
+        private final Set<AssetKind> writeAssets = EnumSet.noneOf(AssetKind.class);
+
+        private Builder() {
+        }
+
+        public Builder readFiles(@NotNull String... patterns) {
+            for (String pattern : patterns) {
+                readFiles.add(PathPattern.of(pattern));
+            }
+            return this;
+        }
+
+        public Builder writeFiles(@NotNull String... patterns) {
+            for (String pattern : patterns) {
+                writeFiles.add(PathPattern.of(pattern));
+            }
+            return this;
+        }
+
+        public Builder readExtras(@NotNull Extra<?>... extras) {
+            readExtras.addAll(Arrays.asList(extras));
+            return this;
+        }
+
+        public Builder writeExtras(@NotNull Extra<?>... extras) {
+            writeExtras.addAll(Arrays.asList(extras));
+            return this;
+        }
+
+        public Builder readAssets(@NotNull AssetKind... kinds) {
+            readAssets.addAll(Arrays.asList(kinds));
+            return this;
+        }
+
+        public Builder writeAssets(@NotNull AssetKind... kinds) {
+            writeAssets.addAll(Arrays.asList(kinds));
+            return this;
+        }
+
+        public @NotNull TaskAccess build() {
+            return new TaskAccess(this);
+        }
+    }
+}
@@ -32,5 +32,7 @@ public interface TaskIO {
     @NotNull Extras getExtras();
 
     @NotNull File getTempDirectory();
+
+    @NotNull BuildCache getCache();
     
 }
@@ -0,0 +1,140 @@
+/*
+ * This file is part of ProPack, a Minecraft resource pack toolkit
+ * Copyright (C) Michael Neonov <two.nelonn@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.nelonn.propack.builder.api.util;
+
+import me.nelonn.propack.core.util.PathUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Glob over file collection paths. {@code *} matches inside one path segment, {@code **} matches across segments.
+ */
+public final class PathPattern {
+    private static final int STAR = -1;
+    private static final int DOUBLE_STAR = -2;
+
+    public static final PathPattern ALL = of("**");
+
+    public static @NotNull PathPattern of(@NotNull String pattern) {
+        return new PathPattern(PathUtil.format(pattern));
+    }
+
+    private final String pattern;
+    private final int[] tokens;
+
+    private PathPattern(@NotNull String pattern) {
+        this.pattern = pattern;
+        this.tokens = tokenize(pattern, true);
+    }
+
+    public @NotNull String getPattern() {
+        return pattern;
+    }
+
+    public boolean matches(@NotNull String path) {
+        return intersects(tokens, tokenize(PathUtil.format(path), false));
+    }
+
+    /**
+     * @return true if at least one path can be matched by both patterns
+     */
+    public boolean overlaps(@NotNull PathPattern other) {
+        return intersects(tokens, other.tokens);
+    }
+
+    private static int[] tokenize(String pattern, boolean wildcards) {
+        int[] out = new int[pattern.length()];
+        int size = 0;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (wildcards && c == '*') {
+                if (i + 1 < pattern.length() && pattern.charAt(i + 1) == '*') {
+                    out[size++] = DOUBLE_STAR;
+                    i++;
+                } else {
+                    out[size++] = STAR;
+                }
+            } else {
+                out[size++] = c;
+            }
+        }
+        int[] result = new int[size];
+        System.arraycopy(out, 0, result, 0, size);
+        return result;
+    }
+
+    // Walks the product of both patterns, wildcards either consume a character and stay or are skipped
+    private static boolean intersects(int[] a, int[] b) {
+        int width = b.length + 1;
+        boolean[] visited = new boolean[(a.length + 1) * width];
+        Deque<int[]> queue = new ArrayDeque<>();
+        queue.add(new int[]{0, 0});
+        visited[0] = true;
+        while (!queue.isEmpty()) {
+            int[] state = queue.poll();
+            int i = state[0];
+            int j = state[1];
+            if (i == a.length && j == b.length) return true;
+            if (i < a.length && a[i] < 0) {
+                visit(queue, visited, width, i + 1, j);
+            }
+            if (j < b.length && b[j] < 0) {
+                visit(queue, visited, width, i, j + 1);
+            }
+            if (i < a.length && j < b.length && canShareChar(a[i], b[j])) {
+                visit(queue, visited, width, a[i] < 0 ? i : i + 1, b[j] < 0 ? j : j + 1);
+            }
+        }
+        return false;
+    }
+
+    private static void visit(Deque<int[]> queue, boolean[] visited, int width, int i, int j) {
+        int index = i * width + j;
+        if (visited[index]) return;
+        visited[index] = true;
+        queue.add(new int[]{i, j});
+    }
+
+    private static boolean canShareChar(int a, int b) {
+        if (a == DOUBLE_STAR || b == DOUBLE_STAR) return true;
+        if (a == STAR && b == STAR) return true;
+        if (a == STAR) return b != '/';
+        if (b == STAR) return a != '/';
+        return a == b;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return pattern.equals(((PathPattern) o).pattern);
+    }
+
+    @Override
+    public int hashCode() {
+        return pattern.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+}
@@ -35,7 +35,10 @@ public class BuildConfiguration {
     private final Pattern dirIgnore;
     private final Pattern fileIgnore;
     private final int customModelDataStart;
+    private final int meshBudget;
     private final boolean generateItemModels;
+    private final boolean incremental;
+    private final boolean canonical;
     private final ObfuscationConfiguration obfuscationConfiguration;
     private final Map<String, String> allLangTranslations;
     private final Set<String> languages;
@@ -48,7 +51,10 @@ public class BuildConfiguration {
                               @Nullable Pattern dirIgnore,
                               @Nullable Pattern fileIgnore,
                               int customModelDataStart,
+                              int meshBudget,
                               boolean generateItemModels,
+                              boolean incremental,
+                              boolean canonical,
                               ObfuscationConfiguration obfuscationConfiguration,
                               Map<String, String> allLangTranslations,
                               Set<String> languages,
@@ -59,7 +65,10 @@ public class BuildConfiguration {
         this.dirIgnore = dirIgnore;
         this.fileIgnore = fileIgnore;
         this.customModelDataStart = customModelDataStart;
+        this.meshBudget = meshBudget;
         this.generateItemModels = generateItemModels;
+        this.incremental = incremental;
+        this.canonical = canonical;
         this.obfuscationConfiguration = obfuscationConfiguration;
         this.allLangTranslations = allLangTranslations;
         this.languages = languages;
@@ -100,10 +109,25 @@ public class BuildConfiguration {
         return customModelDataStart;
     }
 
+    /**
+     * @return most meshes a combined or slot model may generate, 0 for no limit
+     */
+    public int getMeshBudget() {
+        return meshBudget;
+    }
+
     public boolean isGenerateItemModels() {
         return generateItemModels;
     }
 
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    public boolean isCanonical() {
+        return canonical;
+    }
+
     public ObfuscationConfiguration getObfuscationConfiguration() {
         return obfuscationConfiguration;
     }
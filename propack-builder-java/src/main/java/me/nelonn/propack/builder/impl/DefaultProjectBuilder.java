@@ -21,7 +21,9 @@ package me.nelonn.propack.builder.impl;
 import me.nelonn.propack.builder.api.Project;
 import me.nelonn.propack.builder.api.ProjectBuilder;
 import me.nelonn.propack.builder.api.task.Task;
+import me.nelonn.propack.builder.api.task.TaskAccess;
 import me.nelonn.propack.builder.api.task.TaskBootstrap;
+import me.nelonn.propack.builder.api.task.TaskIO;
 import me.nelonn.propack.builder.impl.task.*;
 import me.nelonn.propack.core.ResourcesCreator;
 import me.nelonn.propack.core.util.LogManagerCompat;
@@ -29,8 +31,15 @@ import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 
 import static java.util.Objects.requireNonNull;
 
@@ -44,7 +53,9 @@ public class DefaultProjectBuilder implements ProjectBuilder {
 
     public BuiltResourcePack build() {
         long startTimestamp = System.currentTimeMillis();
-        DefaultTaskIO io = new DefaultTaskIO(new File(project.getBuildDir(), "temp"));
+        DefaultBuildCache cache = project.getBuildConfiguration().isIncremental() ?
+                DefaultBuildCache.open(new File(project.getBuildDir(), "cache")) : DefaultBuildCache.disabled();
+        DefaultTaskIO io = new DefaultTaskIO(new File(project.getBuildDir(), "temp"), cache);
         try {
             Set<Task> tasksInstances = new LinkedHashSet<>();
 
@@ -56,19 +67,12 @@ public class DefaultProjectBuilder implements ProjectBuilder {
                 throw new IllegalArgumentException("Unable to create instance of task", e);
             }
 
-            for (Task task : tasksInstances) {
-                try {
-                    task.run(io);
-                } catch (Throwable e) {
-                    LOGGER.info("Task {} FAILED", task);
-                    if (e instanceof IllegalArgumentException) {
-                        LOGGER.error(e.getMessage());
-                    } else {
-                        LOGGER.error("Stacktrace:", e);
-                    }
-                    throw new TaskFailedException(task.toString());
-                }
-                LOGGER.info("Task {}", task);
+            runTasks(new ArrayList<>(tasksInstances), io);
+
+            try {
+                cache.save();
+            } catch (IOException e) {
+                LOGGER.warn("Unable to save build cache", e);
             }
 
             BuiltResourcePack builtResourcePack = new BuiltResourcePack(project,
@@ -90,7 +94,73 @@ public class DefaultProjectBuilder implements ProjectBuilder {
         } catch (TaskFailedException e) {
             LOGGER.error("BUILD FAILED in {}s", (int) (System.currentTimeMillis() - startTimestamp) / 1000);
             return null;
+        } finally {
+            cache.close();
+        }
+    }
+
+    private void runTasks(@NotNull List<Task> tasks, @NotNull TaskIO io) {
+        ClassLoader classLoader = getClass().getClassLoader();
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("propack-builder-" + thread.getPoolIndex());
+            thread.setContextClassLoader(classLoader);
+            return thread;
+        }, null, false);
+        try {
+            List<CompletableFuture<Void>> futures = new ArrayList<>(tasks.size());
+            for (int i = 0; i < tasks.size(); i++) {
+                Task task = tasks.get(i);
+                List<CompletableFuture<Void>> dependencies = new ArrayList<>();
+                for (int j = 0; j < i; j++) {
+                    if (dependsOn(task, tasks.get(j))) {
+                        dependencies.add(futures.get(j));
+                    }
+                }
+                futures.add(CompletableFuture.allOf(dependencies.toArray(new CompletableFuture<?>[0]))
+                        .thenRunAsync(() -> runTask(task, io), pool));
+            }
+            try {
+                CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+            } catch (CompletionException ignored) {
+            }
+            // report the first failure in declaration order, dependents of a failed task are never started
+            for (CompletableFuture<Void> future : futures) {
+                try {
+                    future.join();
+                } catch (CompletionException e) {
+                    if (e.getCause() instanceof TaskFailedException) {
+                        throw (TaskFailedException) e.getCause();
+                    }
+                    throw new TaskFailedException(String.valueOf(e.getCause()));
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static boolean dependsOn(@NotNull Task task, @NotNull Task previous) {
+        TaskAccess access = task.getAccess();
+        TaskAccess previousAccess = previous.getAccess();
+        // undeclared tasks keep the plain sequential order
+        if (access == null || previousAccess == null) return true;
+        return access.conflictsWith(previousAccess);
+    }
+
+    private static void runTask(@NotNull Task task, @NotNull TaskIO io) {
+        try {
+            task.run(io);
+        } catch (Throwable e) {
+            LOGGER.info("Task {} FAILED", task);
+            if (e instanceof IllegalArgumentException) {
+                LOGGER.error(e.getMessage());
+            } else {
+                LOGGER.error("Stacktrace:", e);
+            }
+            throw new TaskFailedException(task.toString());
         }
+        LOGGER.info("Task {}", task);
     }
 
     @Override
@@ -49,7 +49,7 @@ public class MeshesMapBuilder {
     public MeshesMap build() {
         Map<Key, Map<Path, Integer>> map = new HashMap<>();
         for (ItemEntry itemEntry : getMappers()) {
-            map.put(itemEntry.getItemId(), new HashMap<>(itemEntry.getMap().inverse()));
+            map.put(itemEntry.getItemId(), itemEntry.getMeshes());
         }
         return new MeshesMap(map);
     }
@@ -57,6 +57,7 @@ public class MeshesMapBuilder {
     public static class ItemEntry {
         private final Key itemId;
         private final BiMap<Integer, Path> map = HashBiMap.create();
+        private final Map<Path, Path> aliases = new HashMap<>();
         private final AtomicInteger integer;
 
         public ItemEntry(Key itemId, int customModelDataStart) {
@@ -69,15 +70,45 @@ public class MeshesMapBuilder {
         }
 
         public @Nullable Integer get(Path path) {
-            return map.inverse().get(path);
+            return map.inverse().get(aliases.getOrDefault(path, path));
         }
 
         public void add(Path path) {
-            map.put(integer.getAndIncrement(), path);
+            add(path, path);
         }
 
+        /**
+         * Registers a mesh with the same content as the canonical mesh, both share its custom model data
+         */
+        public void add(Path path, Path canonical) {
+            if (!map.containsValue(canonical)) {
+                map.put(integer.getAndIncrement(), canonical);
+            }
+            if (!path.equals(canonical)) {
+                aliases.put(path, canonical);
+            }
+        }
+
+        /**
+         * @return custom model data of canonical meshes, aliases are not included
+         */
         public BiMap<Integer, Path> getMap() {
             return map;
         }
+
+        public Map<Path, Path> getAliases() {
+            return aliases;
+        }
+
+        /**
+         * @return custom model data of every mesh including aliases
+         */
+        public Map<Path, Integer> getMeshes() {
+            Map<Path, Integer> meshes = new HashMap<>(map.inverse());
+            for (Map.Entry<Path, Path> alias : aliases.entrySet()) {
+                meshes.put(alias.getKey(), map.inverse().get(alias.getValue()));
+            }
+            return meshes;
+        }
     }
 }
\ No newline at end of file
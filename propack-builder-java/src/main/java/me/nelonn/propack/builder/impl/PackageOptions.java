@@ -18,14 +18,77 @@
 
 package me.nelonn.propack.builder.impl;
 
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
 public class PackageOptions {
     public final int compressionLevel;
     public final boolean protection;
     public final String comment;
+    public final List<CompressionRule> rules;
+    public final CompressionRule defaultRule;
 
-    public PackageOptions(int compressionLevel, boolean protection, String comment) {
+    public PackageOptions(int compressionLevel, boolean protection, String comment, @NotNull List<CompressionRule> rules) {
         this.compressionLevel = compressionLevel;
         this.protection = protection;
         this.comment = comment;
+        this.rules = Collections.unmodifiableList(rules);
+        this.defaultRule = new CompressionRule("default", Collections.emptySet(), 0L, Long.MAX_VALUE, false, compressionLevel);
+    }
+
+    public PackageOptions(int compressionLevel, boolean protection, String comment) {
+        this(compressionLevel, protection, comment, Collections.emptyList());
+    }
+
+    /**
+     * @return first rule matching the entry, or the default rule
+     */
+    public @NotNull CompressionRule getRule(@NotNull String path, long size) {
+        for (CompressionRule rule : rules) {
+            if (rule.matches(path, size)) {
+                return rule;
+            }
+        }
+        return defaultRule;
+    }
+
+    public static class CompressionRule {
+        public final String name;
+        public final Set<String> extensions;
+        public final long minSize;
+        public final long maxSize;
+        public final boolean stored;
+        public final int compressionLevel;
+
+        /**
+         * @param extensions lowercase extensions without the dot, empty to match any
+         * @param minSize inclusive
+         * @param maxSize inclusive
+         * @param stored true to store entries without compression
+         */
+        public CompressionRule(@NotNull String name, @NotNull Set<String> extensions, long minSize, long maxSize, boolean stored, int compressionLevel) {
+            this.name = name;
+            this.extensions = Collections.unmodifiableSet(extensions);
+            this.minSize = minSize;
+            this.maxSize = maxSize;
+            this.stored = stored;
+            this.compressionLevel = compressionLevel;
+        }
+
+        public boolean matches(@NotNull String path, long size) {
+            if (size < minSize || size > maxSize) return false;
+            if (extensions.isEmpty()) return true;
+            int dot = path.lastIndexOf('.');
+            return dot > path.lastIndexOf('/') && extensions.contains(path.substring(dot + 1).toLowerCase(Locale.ROOT));
+        }
+
+        @Override
+        public String toString() {
+            return name + extensions + '[' + minSize + ',' + maxSize + ']' + (stored ? "STORED" : "DEFLATED:" + compressionLevel);
+        }
     }
 }
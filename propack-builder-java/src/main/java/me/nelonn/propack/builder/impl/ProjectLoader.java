@@ -21,6 +21,7 @@ package me.nelonn.propack.builder.impl;
 import com.google.common.collect.ImmutableSet;
 import com.google.gson.*;
 import me.nelonn.flint.path.Key;
+import me.nelonn.propack.CustomModelLookup;
 import me.nelonn.propack.ResourcePack;
 import me.nelonn.propack.Resources;
 import me.nelonn.propack.builder.api.StrictMode;
@@ -57,6 +58,7 @@ public class ProjectLoader {
     public static final Extra<File> EXTRA_CONFIG_DIR = new Extra<>(File.class, "propack.project_loader.config_dir");
     private final ProPackCore core;
     private final List<TextLoader> textLoaders;
+    private int lookupCacheSize = CustomModelLookup.DEFAULT_CACHE_SIZE;
 
     public ProjectLoader(@NotNull ProPackCore core,
                          @Nullable List<TextLoader> textLoaders) {
@@ -79,6 +81,17 @@ public class ProjectLoader {
         return textLoaders;
     }
 
+    public int getLookupCacheSize() {
+        return lookupCacheSize;
+    }
+
+    /**
+     * @param lookupCacheSize number of cached custom model lookups per loaded pack, 0 disables caching
+     */
+    public void setLookupCacheSize(int lookupCacheSize) {
+        this.lookupCacheSize = lookupCacheSize;
+    }
+
     public @NotNull InternalProject load(@NotNull File projectFile, boolean tryLoadBuilt) {
         String name;
         VirtualFile packMeta;
@@ -144,7 +157,10 @@ public class ProjectLoader {
         Pattern fileIgnore = null;
         Pattern dirIgnore = null;
         int customModelDataStart = 1;
+        int meshBudget = 0;
         boolean generateItemModels = false;
+        boolean incremental = true;
+        boolean canonical = true;
         ObfuscationConfiguration obfuscationConfiguration;
         try {
             File buildConfigFile = new File(projectFile.getParentFile(), "config/build.json5");
@@ -199,10 +215,25 @@ public class ProjectLoader {
                 customModelDataStart = GsonHelper.getInt(buildConfigObject, "CustomModelDataStart");
             }
 
+            if (buildConfigObject.has("MeshBudget")) {
+                meshBudget = GsonHelper.getInt(buildConfigObject, "MeshBudget");
+                if (meshBudget < 0) {
+                    throw new IllegalArgumentException("MeshBudget cannot be negative");
+                }
+            }
+
             if (buildConfigObject.has("GenerateItemModels")) {
                 generateItemModels = GsonHelper.getBoolean(buildConfigObject, "GenerateItemModels");
             }
 
+            if (buildConfigObject.has("Incremental")) {
+                incremental = GsonHelper.getBoolean(buildConfigObject, "Incremental");
+            }
+
+            if (buildConfigObject.has("Canonical")) {
+                canonical = GsonHelper.getBoolean(buildConfigObject, "Canonical");
+            }
+
             JsonObject obfuscationObject = GsonHelper.getObject(buildConfigObject, "Obfuscation");
 
             boolean obfuscationEnabled = GsonHelper.getBoolean(obfuscationObject, "Enabled", false);
@@ -272,27 +303,37 @@ public class ProjectLoader {
             File packageConfigFile = new File(projectFile.getParentFile(), "config/package.json5");
             String packageConfigContent = IOUtil.readString(packageConfigFile);
             JsonObject packageConfigObject = GsonHelper.deserialize(packageConfigContent, true);
-            int compressionLevel;
-            if (packageConfigObject.has("compression")) {
-                JsonElement jsonElement = packageConfigObject.get("compression");
-                if (GsonHelper.isString(jsonElement)) {
-                    String string = jsonElement.getAsString();
-                    try {
-                        compressionLevel = Deflater.class.getDeclaredField(string).getInt(null);
-                    } catch (Exception e) {
-                        throw new IllegalArgumentException("Compression level with name '" + string + "' not found");
+            int compressionLevel = packageConfigObject.has("compression")
+                    ? parseCompressionLevel(packageConfigObject.get("compression"), "compression")
+                    : Deflater.BEST_COMPRESSION;
+            boolean protection = GsonHelper.getBoolean(packageConfigObject, "protection", false);
+            String comment = GsonHelper.getString(packageConfigObject, "comment", "");
+            List<PackageOptions.CompressionRule> compressionRules = new ArrayList<>();
+            if (packageConfigObject.has("rules")) {
+                JsonArray rulesArray = GsonHelper.getArray(packageConfigObject, "rules");
+                for (int i = 0; i < rulesArray.size(); i++) {
+                    JsonObject ruleObject = GsonHelper.asObject(rulesArray.get(i), "rules[" + i + "]");
+                    Set<String> extensions = new LinkedHashSet<>();
+                    if (ruleObject.has("extensions")) {
+                        Util.forEachStringArray(GsonHelper.getArray(ruleObject, "extensions"), "extensions", extension -> {
+                            extensions.add(extension.toLowerCase(Locale.ROOT).replaceFirst("^\\.", ""));
+                        });
                     }
-                } else if (GsonHelper.isNumber(jsonElement)) {
-                    compressionLevel = GsonHelper.getInt(packageConfigObject, "compression");
-                } else {
-                    throw new IllegalArgumentException("Expected 'compression' to be a string or number");
+                    long minSize = GsonHelper.getLong(ruleObject, "min_size", 0L);
+                    long maxSize = GsonHelper.getLong(ruleObject, "max_size", Long.MAX_VALUE);
+                    String method = GsonHelper.getString(ruleObject, "method", "DEFLATED").toUpperCase(Locale.ROOT);
+                    if (!method.equals("STORED") && !method.equals("DEFLATED")) {
+                        throw new IllegalArgumentException("Expected 'method' to be STORED or DEFLATED, got '" + method + "'");
+                    }
+                    int ruleCompressionLevel = ruleObject.has("compression")
+                            ? parseCompressionLevel(ruleObject.get("compression"), "compression")
+                            : compressionLevel;
+                    String ruleName = GsonHelper.getString(ruleObject, "name", "rules[" + i + "]");
+                    compressionRules.add(new PackageOptions.CompressionRule(ruleName, extensions, minSize, maxSize,
+                            method.equals("STORED"), ruleCompressionLevel));
                 }
-            } else {
-                compressionLevel = Deflater.BEST_COMPRESSION;
             }
-            boolean protection = GsonHelper.getBoolean(packageConfigObject, "protection", false);
-            String comment = GsonHelper.getString(packageConfigObject, "comment", "");
-            packageOptions = new PackageOptions(compressionLevel, protection, comment);
+            packageOptions = new PackageOptions(compressionLevel, protection, comment, compressionRules);
         } catch (Exception e) {
             throw new IllegalArgumentException("Something went wrong when loading 'config/package.json5'", e);
         }
@@ -321,7 +362,10 @@ public class ProjectLoader {
                 dirIgnore,
                 fileIgnore,
                 customModelDataStart,
+                meshBudget,
                 generateItemModels,
+                incremental,
+                canonical,
                 obfuscationConfiguration,
                 allLangTranslations,
                 languages,
@@ -334,7 +378,7 @@ public class ProjectLoader {
         File builtResourcePack = new File(projectFile.getParentFile(), "build/" + name + ".propack");
         if (builtResourcePack.exists() && tryLoadBuilt) {
             try {
-                ProPackFileLoader proPackFileLoader = new ProPackFileLoader();
+                ProPackFileLoader proPackFileLoader = new ProPackFileLoader(lookupCacheSize);
                 Resources resources = proPackFileLoader.load(builtResourcePack);
                 resourcePack = new LoadedResourcePack(name, resources);
             } catch (Exception e) {
@@ -350,6 +394,21 @@ public class ProjectLoader {
         return project;
     }
 
+    private static int parseCompressionLevel(JsonElement element, String name) {
+        if (GsonHelper.isString(element)) {
+            String string = element.getAsString();
+            try {
+                return Deflater.class.getDeclaredField(string).getInt(null);
+            } catch (Exception e) {
+                throw new IllegalArgumentException("Compression level with name '" + string + "' not found");
+            }
+        } else if (GsonHelper.isNumber(element)) {
+            return GsonHelper.asInt(element, name);
+        } else {
+            throw new IllegalArgumentException("Expected '" + name + "' to be a string or number");
+        }
+    }
+
     private static Object toPrimitive(JsonElement element) {
         JsonPrimitive primitive = element.getAsJsonPrimitive();
         if (primitive.isNumber()) {
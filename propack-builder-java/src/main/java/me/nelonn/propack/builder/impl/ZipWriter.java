@@ -0,0 +1,277 @@
+/*
+ * This file is part of ProPack, a Minecraft resource pack toolkit
+ * Copyright (C) Michael Neonov <two.nelonn@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.nelonn.propack.builder.impl;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * Zip archive writer for entries compressed in advance, so compression can run on other threads.
+ * Every entry gets the same timestamp (1980-01-01 00:00).
+ */
+public class ZipWriter implements Closeable {
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END_OF_CENTRAL = 0x06054b50;
+    private static final int ZIP64_END_OF_CENTRAL = 0x06064b50;
+    private static final int ZIP64_LOCATOR = 0x07064b50;
+    private static final int ZIP64_EXTRA = 0x0001;
+    private static final int UTF8_FLAG = 0x0800;
+    private static final int DOS_TIME = 0;
+    private static final int DOS_DATE = (1 << 5) | 1;
+    private static final long MAGIC_32 = 0xFFFFFFFFL;
+    private static final int MAGIC_16 = 0xFFFF;
+
+    private final OutputStream out;
+    private final byte[] scratch = new byte[8];
+    private final List<Entry> entries = new ArrayList<>();
+    private long written;
+    private boolean finished;
+
+    public ZipWriter(@NotNull OutputStream outputStream) {
+        this.out = new BufferedOutputStream(outputStream, 64 * 1024);
+    }
+
+    public void write(@NotNull Entry entry) throws IOException {
+        if (finished) throw new IllegalStateException("Archive is already finished");
+        if (entry.size >= MAGIC_32 || entry.compressedSize >= MAGIC_32) {
+            throw new IOException("Entry '" + entry.name + "' is too large");
+        }
+        entry.offset = written;
+        writeInt(LOCAL_HEADER);
+        writeShort(entry.getVersionNeeded());
+        writeShort(UTF8_FLAG);
+        writeShort(entry.method);
+        writeShort(DOS_TIME);
+        writeShort(DOS_DATE);
+        writeInt(entry.crc);
+        writeInt(entry.compressedSize);
+        writeInt(entry.size);
+        writeShort(entry.nameBytes.length);
+        writeShort(0);
+        writeBytes(entry.nameBytes, entry.nameBytes.length);
+        writeBytes(entry.data, (int) entry.compressedSize);
+        entry.data = null;
+        entries.add(entry);
+    }
+
+    public void finish(@Nullable String comment) throws IOException {
+        if (finished) return;
+        finished = true;
+        long centralOffset = written;
+        for (Entry entry : entries) {
+            writeCentralHeader(entry);
+        }
+        long centralSize = written - centralOffset;
+        byte[] commentBytes = comment != null ? comment.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        if (commentBytes.length > MAGIC_16) {
+            throw new IOException("Archive comment is too long");
+        }
+        boolean zip64 = entries.size() >= MAGIC_16 || centralOffset >= MAGIC_32 || centralSize >= MAGIC_32;
+        if (zip64) {
+            long zip64EndOffset = written;
+            writeInt(ZIP64_END_OF_CENTRAL);
+            writeLong(44);
+            writeShort(45);
+            writeShort(45);
+            writeInt(0);
+            writeInt(0);
+            writeLong(entries.size());
+            writeLong(entries.size());
+            writeLong(centralSize);
+            writeLong(centralOffset);
+            writeInt(ZIP64_LOCATOR);
+            writeInt(0);
+            writeLong(zip64EndOffset);
+            writeInt(1);
+        }
+        writeInt(END_OF_CENTRAL);
+        writeShort(0);
+        writeShort(0);
+        writeShort(Math.min(entries.size(), MAGIC_16));
+        writeShort(Math.min(entries.size(), MAGIC_16));
+        writeInt(Math.min(centralSize, MAGIC_32));
+        writeInt(Math.min(centralOffset, MAGIC_32));
+        writeShort(commentBytes.length);
+        writeBytes(commentBytes, commentBytes.length);
+        out.flush();
+    }
+
+    private void writeCentralHeader(@NotNull Entry entry) throws IOException {
+        // central values may differ from the local ones (protection), large ones go to the zip64 extra
+        boolean largeSize = entry.centralSize >= MAGIC_32;
+        boolean largeOffset = entry.offset >= MAGIC_32;
+        int extraLength = largeSize || largeOffset ? 4 + (largeSize ? 8 : 0) + (largeOffset ? 8 : 0) : 0;
+        int version = extraLength > 0 ? 45 : entry.getVersionNeeded();
+        writeInt(CENTRAL_HEADER);
+        writeShort(version);
+        writeShort(version);
+        writeShort(UTF8_FLAG);
+        writeShort(entry.method);
+        writeShort(DOS_TIME);
+        writeShort(DOS_DATE);
+        writeInt(entry.centralCrc);
+        writeInt(entry.compressedSize);
+        writeInt(largeSize ? MAGIC_32 : entry.centralSize);
+        writeShort(entry.nameBytes.length);
+        writeShort(extraLength);
+        writeShort(0);
+        writeShort(0);
+        writeShort(0);
+        writeInt(0);
+        writeInt(largeOffset ? MAGIC_32 : entry.offset);
+        writeBytes(entry.nameBytes, entry.nameBytes.length);
+        if (extraLength > 0) {
+            writeShort(ZIP64_EXTRA);
+            writeShort(extraLength - 4);
+            if (largeSize) writeLong(entry.centralSize);
+            if (largeOffset) writeLong(entry.offset);
+        }
+    }
+
+    private void writeShort(int value) throws IOException {
+        scratch[0] = (byte) value;
+        scratch[1] = (byte) (value >>> 8);
+        writeBytes(scratch, 2);
+    }
+
+    private void writeInt(long value) throws IOException {
+        for (int i = 0; i < 4; i++) {
+            scratch[i] = (byte) (value >>> (i * 8));
+        }
+        writeBytes(scratch, 4);
+    }
+
+    private void writeLong(long value) throws IOException {
+        for (int i = 0; i < 8; i++) {
+            scratch[i] = (byte) (value >>> (i * 8));
+        }
+        writeBytes(scratch, 8);
+    }
+
+    private void writeBytes(byte[] bytes, int length) throws IOException {
+        out.write(bytes, 0, length);
+        written += length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish(null);
+        } finally {
+            out.close();
+        }
+    }
+
+    public static class Entry {
+        private final String name;
+        private final byte[] nameBytes;
+        private final int method;
+        private final long crc;
+        private final long size;
+        private final long compressedSize;
+        private byte[] data;
+        private long centralCrc;
+        private long centralSize;
+        private long offset;
+
+        private Entry(@NotNull String name, int method, long crc, long size, byte @NotNull [] data, int dataLength) {
+            this.name = name;
+            this.nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            this.method = method;
+            this.crc = crc;
+            this.size = size;
+            this.compressedSize = dataLength;
+            this.data = data;
+            this.centralCrc = crc;
+            this.centralSize = size;
+        }
+
+        /**
+         * Compresses the content with raw DEFLATE, safe to call from any thread.
+         */
+        public static @NotNull Entry deflate(@NotNull String name, byte @NotNull [] content, int level) {
+            Deflater deflater = new Deflater(level, true);
+            try {
+                deflater.setInput(content);
+                deflater.finish();
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, content.length / 2));
+                byte[] buffer = new byte[16 * 1024];
+                while (!deflater.finished()) {
+                    int length = deflater.deflate(buffer);
+                    compressed.write(buffer, 0, length);
+                }
+                byte[] data = compressed.toByteArray();
+                return new Entry(name, ZipEntry.DEFLATED, crc(content), content.length, data, data.length);
+            } finally {
+                deflater.end();
+            }
+        }
+
+        public static @NotNull Entry store(@NotNull String name, byte @NotNull [] content) {
+            return new Entry(name, ZipEntry.STORED, crc(content), content.length, content, content.length);
+        }
+
+        private static long crc(byte[] content) {
+            CRC32 crc32 = new CRC32();
+            crc32.update(content, 0, content.length);
+            return crc32.getValue();
+        }
+
+        private int getVersionNeeded() {
+            return method == ZipEntry.STORED ? 10 : 20;
+        }
+
+        public @NotNull String getName() {
+            return name;
+        }
+
+        public int getMethod() {
+            return method;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getCompressedSize() {
+            return compressedSize;
+        }
+
+        /**
+         * Overrides the crc and size stored in the central directory only
+         */
+        public void setCentralValues(long crc, long size) {
+            this.centralCrc = crc;
+            this.centralSize = size;
+        }
+    }
+}
@@ -27,13 +27,13 @@ import org.jetbrains.annotations.Nullable;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 public class ConcurrentFileCollection implements FileCollection {
     private final Map<String, File> files;
 
     public ConcurrentFileCollection() {
-        files = new ConcurrentHashMap<>();
+        files = new ConcurrentSkipListMap<>();
     }
 
     @Override
@@ -0,0 +1,287 @@
+/*
+ * This file is part of ProPack, a Minecraft resource pack toolkit
+ * Copyright (C) Michael Neonov <two.nelonn@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.nelonn.propack.builder.impl.task;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import me.nelonn.propack.Sha1;
+import me.nelonn.propack.builder.api.file.File;
+import me.nelonn.propack.builder.api.file.LazyJsonFile;
+import me.nelonn.propack.builder.api.file.RealFile;
+import me.nelonn.propack.builder.api.file.VirtualFile;
+import me.nelonn.propack.builder.api.task.BuildCache;
+import me.nelonn.propack.core.util.GsonHelper;
+import me.nelonn.propack.core.util.IOUtil;
+import me.nelonn.propack.core.util.LogManagerCompat;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.SoftReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class DefaultBuildCache implements BuildCache, Closeable {
+    private static final Logger LOGGER = LogManagerCompat.getLogger();
+    private static final int VERSION = 1;
+    private static final String INDEX_FILE = "index.json";
+    private static final int MAX_MEMOS = 1024;
+    // cache directories of running builds
+    private static final Set<java.io.File> IN_USE = ConcurrentHashMap.newKeySet();
+    // memoized values outlive a build, softly so they never compete with the build for heap
+    private static final Map<String, SoftReference<Memo>> MEMOS = new LinkedHashMap<String, SoftReference<Memo>>(16, 0.75F, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SoftReference<Memo>> eldest) {
+            return size() > MAX_MEMOS;
+        }
+    };
+
+    /**
+     * Opens the cache for one build, must be closed when the build ends.
+     * A concurrent build of the same project gets a disabled cache instead.
+     */
+    public static @NotNull DefaultBuildCache open(@NotNull java.io.File directory) {
+        java.io.File absoluteDirectory = directory.getAbsoluteFile();
+        if (!IN_USE.add(absoluteDirectory)) {
+            LOGGER.warn("Build cache '{}' is used by another build, building without it", absoluteDirectory);
+            return disabled();
+        }
+        return new DefaultBuildCache(absoluteDirectory);
+    }
+
+    public static @NotNull DefaultBuildCache disabled() {
+        return new DefaultBuildCache(null);
+    }
+
+    private final java.io.File directory;
+    private final Map<String, Fingerprint> fingerprints = new ConcurrentHashMap<>();
+    private final Set<String> touched = ConcurrentHashMap.newKeySet();
+    private final Set<java.io.File> usedOutputs = ConcurrentHashMap.newKeySet();
+
+    private DefaultBuildCache(@Nullable java.io.File directory) {
+        this.directory = directory;
+        if (directory != null) {
+            load();
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    @Override
+    public @NotNull Sha1 fingerprint(@NotNull java.io.File file) throws IOException {
+        if (directory == null) {
+            return hash(file);
+        }
+        String key = file.getAbsolutePath();
+        touched.add(key);
+        long size = file.length();
+        long lastModified = file.lastModified();
+        Fingerprint fingerprint = fingerprints.get(key);
+        if (fingerprint != null && fingerprint.size == size && fingerprint.lastModified == lastModified) {
+            return fingerprint.sha1;
+        }
+        Sha1 sha1 = hash(file);
+        fingerprints.put(key, new Fingerprint(size, lastModified, sha1));
+        return sha1;
+    }
+
+    @Override
+    public void putFingerprint(@NotNull java.io.File file, @NotNull Sha1 sha1) {
+        if (directory == null) return;
+        String key = file.getAbsolutePath();
+        touched.add(key);
+        fingerprints.put(key, new Fingerprint(file.length(), file.lastModified(), sha1));
+    }
+
+    @Override
+    public @NotNull Sha1 fingerprint(@NotNull File file) throws IOException {
+        if (file instanceof RealFile) {
+            return fingerprint(((RealFile) file).getFile());
+        }
+        if (file instanceof LazyJsonFile && !((LazyJsonFile) file).isLoaded()) {
+            return fingerprint(((LazyJsonFile) file).getSource());
+        }
+        if (file instanceof VirtualFile) {
+            return Sha1.fromBytes(((VirtualFile) file).getBytes());
+        }
+        try (InputStream in = file.openInputStream()) {
+            return Sha1.fromInputStream(in);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> @NotNull T memoize(@NotNull java.io.File file, @NotNull Loader<T> loader) throws IOException {
+        if (directory == null) {
+            return loader.load(file);
+        }
+        String key = file.getAbsolutePath();
+        touched.add(key);
+        long size = file.length();
+        long lastModified = file.lastModified();
+        Memo memo;
+        synchronized (MEMOS) {
+            SoftReference<Memo> reference = MEMOS.get(key);
+            memo = reference != null ? reference.get() : null;
+        }
+        if (memo != null && memo.size == size && memo.lastModified == lastModified && memo.loader == loader.getClass()) {
+            return (T) memo.value;
+        }
+        T value = loader.load(file);
+        synchronized (MEMOS) {
+            MEMOS.put(key, new SoftReference<>(new Memo(size, lastModified, loader.getClass(), value)));
+        }
+        return value;
+    }
+
+    @Override
+    public @Nullable java.io.File getOutput(@NotNull String owner, @NotNull Sha1 key) {
+        if (directory == null) return null;
+        java.io.File output = new java.io.File(new java.io.File(directory, owner), key.asString());
+        usedOutputs.add(output);
+        return output;
+    }
+
+    /**
+     * Writes the fingerprint index and removes everything that was not used by the last build.
+     */
+    public void save() throws IOException {
+        if (directory == null) return;
+        fingerprints.keySet().retainAll(touched);
+        java.io.File[] owners = directory.listFiles(java.io.File::isDirectory);
+        if (owners != null) {
+            for (java.io.File owner : owners) {
+                java.io.File[] outputs = owner.listFiles();
+                if (outputs == null) continue;
+                for (java.io.File output : outputs) {
+                    if (!usedOutputs.contains(output)) {
+                        delete(output);
+                    }
+                }
+            }
+        }
+        JsonObject files = new JsonObject();
+        for (Map.Entry<String, Fingerprint> entry : fingerprints.entrySet()) {
+            Fingerprint fingerprint = entry.getValue();
+            JsonObject fileObject = new JsonObject();
+            fileObject.addProperty("size", fingerprint.size);
+            fileObject.addProperty("last_modified", fingerprint.lastModified);
+            fileObject.addProperty("sha1", fingerprint.sha1.asString());
+            files.add(entry.getKey(), fileObject);
+        }
+        JsonObject root = new JsonObject();
+        root.addProperty("version", VERSION);
+        root.add("files", files);
+        directory.mkdirs();
+        java.io.File indexFile = new java.io.File(directory, INDEX_FILE);
+        java.io.File tempFile = new java.io.File(directory, INDEX_FILE + ".tmp");
+        Files.write(tempFile.toPath(), root.toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Lets the next build of the project use the cache
+     */
+    @Override
+    public void close() {
+        if (directory != null) {
+            IN_USE.remove(directory);
+        }
+    }
+
+    private void load() {
+        java.io.File indexFile = new java.io.File(directory, INDEX_FILE);
+        if (!indexFile.isFile()) return;
+        try {
+            JsonObject root = GsonHelper.deserialize(IOUtil.readString(indexFile));
+            if (GsonHelper.getInt(root, "version", 0) != VERSION) return;
+            for (Map.Entry<String, JsonElement> entry : GsonHelper.getObject(root, "files").entrySet()) {
+                JsonObject fileObject = entry.getValue().getAsJsonObject();
+                fingerprints.put(entry.getKey(), new Fingerprint(GsonHelper.getLong(fileObject, "size"),
+                        GsonHelper.getLong(fileObject, "last_modified"),
+                        Sha1.fromHashString(GsonHelper.getString(fileObject, "sha1"))));
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Unable to load build cache index, starting from scratch", e);
+            fingerprints.clear();
+        }
+    }
+
+    private static void delete(@NotNull java.io.File file) {
+        java.io.File[] children = file.listFiles();
+        if (children != null) {
+            for (java.io.File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static @NotNull Sha1 hash(@NotNull java.io.File file) throws IOException {
+        Sha1.Hasher hasher = Sha1.hasher();
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                hasher.update(buffer, 0, read);
+            }
+        }
+        return hasher.finish();
+    }
+
+    private static class Fingerprint {
+        private final long size;
+        private final long lastModified;
+        private final Sha1 sha1;
+
+        private Fingerprint(long size, long lastModified, @NotNull Sha1 sha1) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.sha1 = sha1;
+        }
+    }
+
+    private static class Memo {
+        private final long size;
+        private final long lastModified;
+        private final Class<?> loader;
+        private final Object value;
+
+        private Memo(long size, long lastModified, @NotNull Class<?> loader, @NotNull Object value) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.loader = loader;
+            this.value = value;
+        }
+    }
+}
@@ -19,6 +19,7 @@
 package me.nelonn.propack.builder.impl.task;
 
 import me.nelonn.propack.builder.api.task.AssetCollection;
+import me.nelonn.propack.builder.api.task.BuildCache;
 import me.nelonn.propack.builder.api.task.FileCollection;
 import me.nelonn.propack.builder.api.task.TaskIO;
 import me.nelonn.propack.builder.api.util.Extras;
@@ -31,12 +32,14 @@ public class DefaultTaskIO implements TaskIO {
     private final ConcurrentAssetCollection assetCollection;
     private final Extras extras;
     private final File tempDirectory;
+    private final BuildCache cache;
 
-    public DefaultTaskIO(@NotNull File tempDirectory) {
+    public DefaultTaskIO(@NotNull File tempDirectory, @NotNull BuildCache cache) {
         this.fileCollection = new ConcurrentFileCollection();
         this.assetCollection = new ConcurrentAssetCollection();
         this.extras = new Extras();
         this.tempDirectory = tempDirectory;
+        this.cache = cache;
     }
 
     @Override
@@ -58,4 +61,9 @@ public class DefaultTaskIO implements TaskIO {
     public @NotNull File getTempDirectory() {
         return tempDirectory;
     }
+
+    @Override
+    public @NotNull BuildCache getCache() {
+        return cache;
+    }
 }
@@ -18,13 +18,12 @@
 
 package me.nelonn.propack.builder.impl.task;
 
-import com.google.gson.JsonObject;
 import me.nelonn.flint.path.Path;
 import me.nelonn.flint.path.PathException;
 import me.nelonn.flint.path.PathImpl;
 import me.nelonn.propack.builder.api.Project;
 import me.nelonn.propack.builder.api.StrictMode;
-import me.nelonn.propack.builder.api.file.JsonFile;
+import me.nelonn.propack.builder.api.file.LazyJsonFile;
 import me.nelonn.propack.builder.api.file.RealFile;
 import me.nelonn.propack.builder.api.file.TextFile;
 import me.nelonn.propack.builder.api.task.AbstractTask;
@@ -33,41 +32,115 @@ import me.nelonn.propack.builder.api.task.TaskIO;
 import me.nelonn.propack.core.util.GsonHelper;
 import me.nelonn.propack.core.util.IOUtil;
 import me.nelonn.propack.core.util.LogManagerCompat;
+import me.nelonn.propack.core.util.NamedThreadFactory;
 import me.nelonn.propack.core.util.PathUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
 public class GatherSourcesTask extends AbstractTask {
     private static final Logger LOGGER = LogManagerCompat.getLogger();
     public static final TaskBootstrap BOOTSTRAP = GatherSourcesTask::new;
+    private static final int QUEUE_CAPACITY = 1024;
 
     public GatherSourcesTask(@NotNull Project project) {
         super("gatherSources", project);
     }
 
     @Override
-    public void run(@NotNull TaskIO io) {
-        addDir(io, "include", new File(getProject().getProjectDir(), "include"));
-        addDir(io, "content", new File(getProject().getProjectDir(), "content"));
+    public void run(@NotNull TaskIO io) throws Exception {
+        long startTime = System.nanoTime();
+        int threads = Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadId = new AtomicInteger();
+        // the caller parses itself when the queue is full, so the walk never runs far ahead of parsing
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY), new NamedThreadFactory(r -> "propack-gather-" + threadId.incrementAndGet()),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        Gatherer gatherer = new Gatherer(io, executor);
+        try {
+            gatherer.addDir("include", new File(getProject().getProjectDir(), "include"));
+            gatherer.addDir("content", new File(getProject().getProjectDir(), "content"));
+            gatherer.await();
+        } finally {
+            executor.shutdownNow();
+        }
         io.getFiles().addFile(getProject().getMetaFile());
         io.getFiles().addFile(getProject().getIconFile());
+        double seconds = Math.max(System.nanoTime() - startTime, 1L) / 1_000_000_000.0D;
+        long files = gatherer.files.get();
+        long bytes = gatherer.bytes.get();
+        LOGGER.info("Gathered {} files ({} KiB) in {} ms, {} files/s, {} KiB/s", files, bytes / 1024,
+                (long) (seconds * 1000), (long) (files / seconds), (long) (bytes / 1024 / seconds));
     }
 
-    public void addDir(@NotNull TaskIO io, @NotNull String to, @NotNull File directory) {
-        if (Path.check(to, Path::isAllowedInPathValue).isPresent()) {
-            throw new IllegalArgumentException("Non [a-z0-9/._-] character in path '" + to + "'");
+    private class Gatherer {
+        private final TaskIO io;
+        private final ExecutorService executor;
+        private final List<Future<?>> futures = new ArrayList<>();
+        private final AtomicLong files = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+
+        private Gatherer(@NotNull TaskIO io, @NotNull ExecutorService executor) {
+            this.io = io;
+            this.executor = executor;
+        }
+
+        public void addDir(@NotNull String to, @NotNull File directory) throws IOException {
+            if (Path.check(to, Path::isAllowedInPathValue).isPresent()) {
+                throw new IllegalArgumentException("Non [a-z0-9/._-] character in path '" + to + "'");
+            }
+            java.nio.file.Path root = directory.toPath();
+            if (!Files.isDirectory(root)) return;
+            Deque<String> dirs = new ArrayDeque<>();
+            Files.walkFileTree(root, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<java.nio.file.Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(java.nio.file.Path dir, BasicFileAttributes attrs) {
+                    if (dir.equals(root)) {
+                        dirs.push(to);
+                        return FileVisitResult.CONTINUE;
+                    }
+                    String dirName = dir.getFileName().toString().toLowerCase();
+                    if (!accept(dirs.peek(), dirName, getProject().getBuildConfiguration().getDirIgnore())) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    dirs.push(PathUtil.join(dirs.peek(), dirName));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(java.nio.file.Path file, BasicFileAttributes attrs) {
+                    String fileName = file.getFileName().toString().toLowerCase();
+                    if (attrs.isRegularFile() && accept(dirs.peek(), fileName, getProject().getBuildConfiguration().getFileIgnore())) {
+                        String dirPath = dirs.peek();
+                        File source = file.toFile();
+                        files.incrementAndGet();
+                        bytes.addAndGet(attrs.size());
+                        futures.add(executor.submit(() -> addFile(dirPath, fileName, source)));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(java.nio.file.Path dir, IOException exc) throws IOException {
+                    if (exc != null) throw exc;
+                    dirs.pop();
+                    return FileVisitResult.CONTINUE;
+                }
+            });
         }
-        File[] files = directory.listFiles();
-        if (files == null) return;
-        for (File file : files) {
-            String fileName = file.getName().toLowerCase();
-            @Nullable Pattern pattern = file.isDirectory() ? getProject().getBuildConfiguration().getDirIgnore() :
-                    getProject().getBuildConfiguration().getFileIgnore();
-            if (pattern != null && pattern.matcher(fileName).matches()) continue;
+
+        private boolean accept(@NotNull String to, @NotNull String fileName, @Nullable Pattern pattern) {
+            if (pattern != null && pattern.matcher(fileName).matches()) return false;
             if (Path.checkNamespace(fileName).isPresent()) {
                 String message = to + '/' + fileName + ": Non [a-z0-9._-] character in file name";
                 if (getProject().getBuildConfiguration().getStrictMode() == StrictMode.ENABLED) {
@@ -75,39 +148,39 @@ public class GatherSourcesTask extends AbstractTask {
                 } else if (getProject().getBuildConfiguration().getStrictMode() == StrictMode.WARN) {
                     LOGGER.warn(message);
                 }
-                continue;
-            }
-            if (file.isDirectory()) {
-                addDir(io, PathUtil.join(to, fileName), file);
-            } else {
-                addFile(io, to, file);
+                return false;
             }
+            return true;
         }
-    }
 
-    private void addFile(@NotNull TaskIO io, @NotNull String to, @NotNull File file) {
-        String fileName = file.getName().toLowerCase();
-        if (Path.check(to, Path::isAllowedInPathValue).isPresent()) {
-            throw new IllegalArgumentException("Invalid directory '" + to + "'");
-        }
-        if (Path.checkNamespace(fileName).isPresent()) {
-            throw new IllegalArgumentException("Invalid file name '" + fileName + "'");
+        private void addFile(@NotNull String to, @NotNull String fileName, @NotNull File file) {
+            String path = PathUtil.join(to, fileName);
+            try {
+                if (fileName.endsWith(".json") || fileName.endsWith(".json5") || fileName.endsWith(".jsonc")) {
+                    io.getFiles().addFile(new LazyJsonFile(path, file, source -> io.getCache()
+                            .memoize(source, json -> GsonHelper.deserialize(IOUtil.readString(json), true)).deepCopy()));
+                } else if (fileName.endsWith(".mcmeta") || fileName.endsWith(".fsh") || fileName.endsWith(".vsh")) {
+                    io.getFiles().addFile(new TextFile(path, io.getCache().memoize(file, IOUtil::readString)));
+                } else {
+                    io.getFiles().addFile(new RealFile(path, file));
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+                throw new IllegalArgumentException("Something went wrong when adding '" + fileName + "'", e);
+            }
         }
-        Pattern pattern = getProject().getBuildConfiguration().getFileIgnore();
-        if (pattern != null && pattern.matcher(fileName).matches()) return;
-        String path = PathUtil.join(to, fileName);
-        try {
-            if (fileName.endsWith(".json") || fileName.endsWith(".json5") || fileName.endsWith(".jsonc")) {
-                JsonObject content = GsonHelper.deserialize(IOUtil.readString(file), true);
-                io.getFiles().addFile(new JsonFile(path, content));
-            } else if (fileName.endsWith(".mcmeta") || fileName.endsWith(".fsh") || fileName.endsWith(".vsh")) {
-                io.getFiles().addFile(new TextFile(path, IOUtil.readString(file)));
-            } else {
-                io.getFiles().addFile(new RealFile(path, file));
+
+        public void await() throws InterruptedException {
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    }
+                    throw new IllegalStateException(e.getCause());
+                }
             }
-        } catch (Exception e) {
-            e.printStackTrace();
-            throw new IllegalArgumentException("Something went wrong when adding '" + fileName + "'", e);
         }
     }
 }
@@ -392,7 +392,16 @@ public class ObfuscateTask extends AbstractTask {
     private Iterable<File> files(TaskIO io, ObfuscationConfiguration conf) {
         if (conf.isShuffleSequence()) {
             List<File> files = new ArrayList<>(io.getFiles().getFiles());
-            Collections.shuffle(files);
+            if (getProject().getBuildConfiguration().isCanonical()) {
+                // seeded by the file set, so unchanged sources get the same names
+                long seed = 1;
+                for (File file : files) {
+                    seed = 31 * seed + file.getPath().hashCode();
+                }
+                Collections.shuffle(files, new Random(seed));
+            } else {
+                Collections.shuffle(files);
+            }
             return files;
         } else {
             return io.getFiles().copy().getFiles();
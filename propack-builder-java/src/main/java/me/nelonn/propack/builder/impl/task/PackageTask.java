@@ -24,19 +24,30 @@ import me.nelonn.propack.builder.api.task.AbstractTask;
 import me.nelonn.propack.builder.api.task.FileCollection;
 import me.nelonn.propack.builder.api.task.TaskBootstrap;
 import me.nelonn.propack.builder.api.task.TaskIO;
+import me.nelonn.propack.builder.api.task.TaskAccess;
 import me.nelonn.propack.builder.api.util.Extra;
+import me.nelonn.propack.builder.api.file.JsonFile;
+import me.nelonn.propack.builder.api.file.VirtualFile;
 import me.nelonn.propack.builder.impl.PackageOptions;
+import me.nelonn.propack.builder.impl.ZipWriter;
+import me.nelonn.propack.core.util.IOUtil;
 import me.nelonn.propack.core.util.LogManagerCompat;
+import me.nelonn.propack.core.util.NamedThreadFactory;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 
 import java.io.*;
 import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.nio.file.attribute.FileTime;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class PackageTask extends AbstractTask {
     private static final Logger LOGGER = LogManagerCompat.getLogger();
@@ -44,18 +55,41 @@ public class PackageTask extends AbstractTask {
     public static final Extra<File> EXTRA_ZIP = new Extra<>(File.class, "propack.package.zip");
     public static final Extra<File> EXTRA_SHA1_FILE = new Extra<>(File.class, "propack.package.sha1_file");
     public static final Extra<Sha1> EXTRA_SHA1 = new Extra<>(Sha1.class, "propack.package.sha1");
+    private static final int PACKAGE_CACHE_VERSION = 2;
+    private static final TaskAccess ACCESS = TaskAccess.builder()
+            .readFiles("**")
+            .writeExtras(EXTRA_ZIP, EXTRA_SHA1_FILE, EXTRA_SHA1)
+            .build();
 
     public PackageTask(@NotNull Project project) {
         super("package", project);
     }
 
     @Override
-    public void run(@NotNull TaskIO io) {
+    public @NotNull TaskAccess getAccess() {
+        return ACCESS;
+    }
+
+    @Override
+    public void run(@NotNull TaskIO io) throws IOException {
         File buildDir = getProject().getBuildDir();
         if (!buildDir.exists()) {
             buildDir.mkdirs();
         }
         File zip = new File(buildDir, getProject().getName() + ".zip");
+        File sha1File = new File(buildDir, getProject().getName() + ".sha1");
+        PackageOptions options = getProject().getBuildConfiguration().getPackageOptions();
+        File cacheFile = getPackageCache(io, options);
+        if (cacheFile != null && cacheFile.isFile() && zip.isFile()) {
+            Sha1 cachedSha1 = Sha1.fromHashString(IOUtil.readString(cacheFile).trim());
+            if (io.getCache().fingerprint(zip).asString().equals(cachedSha1.asString())) {
+                LOGGER.info("{} is up to date", zip.getName());
+                io.getExtras().put(EXTRA_ZIP, zip);
+                io.getExtras().put(EXTRA_SHA1, cachedSha1);
+                writeSha1File(io, sha1File, cachedSha1);
+                return;
+            }
+        }
         if (zip.exists()) {
             try {
                 Files.delete(zip.toPath());
@@ -63,7 +97,6 @@ public class PackageTask extends AbstractTask {
                 LOGGER.error("Unable to delete " + zip, e);
             }
         }
-        File sha1File = new File(buildDir, getProject().getName() + ".sha1");
         if (sha1File.exists()) {
             try {
                 Files.delete(sha1File.toPath());
@@ -71,15 +104,18 @@ public class PackageTask extends AbstractTask {
                 LOGGER.error("Unable to delete " + sha1File, e);
             }
         }
-        packageFiles(zip, io.getFiles(), getProject().getBuildConfiguration().getPackageOptions());
+        Sha1 sha1 = packageFiles(zip, io.getFiles(), options, getProject().getBuildConfiguration().isCanonical());
+        io.getCache().putFingerprint(zip, sha1);
         io.getExtras().put(EXTRA_ZIP, zip);
-        me.nelonn.propack.Sha1 sha1;
-        try (InputStream inputStream = Files.newInputStream(zip.toPath())) {
-            sha1 = Sha1.fromInputStream(inputStream);
-        } catch (Exception e) {
-            throw new IllegalStateException("Unable to hash sha1 file", e);
-        }
         io.getExtras().put(EXTRA_SHA1, sha1);
+        writeSha1File(io, sha1File, sha1);
+        if (cacheFile != null) {
+            cacheFile.getParentFile().mkdirs();
+            Files.write(cacheFile.toPath(), sha1.asString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void writeSha1File(@NotNull TaskIO io, @NotNull File sha1File, @NotNull Sha1 sha1) {
         try (OutputStream outputStream = Files.newOutputStream(sha1File.toPath())) {
             outputStream.write(sha1.toString().getBytes(StandardCharsets.UTF_8));
             io.getExtras().put(EXTRA_SHA1_FILE, sha1File);
@@ -88,30 +124,141 @@ public class PackageTask extends AbstractTask {
         }
     }
 
-    private void packageFiles(@NotNull File output, @NotNull FileCollection input, @NotNull PackageOptions options) {
-        try (FileOutputStream fileOutputStream = new FileOutputStream(output);
-             ZipOutputStream zipOutputStream = new ZipOutputStream(fileOutputStream, StandardCharsets.UTF_8)) {
-            zipOutputStream.setLevel(options.compressionLevel);
-            zipOutputStream.setComment(options.comment);
-            for (me.nelonn.propack.builder.api.file.File file : input) {
-                final ZipEntry zipEntry = new ZipEntry(file.getPath());
-                zipEntry.setLastModifiedTime(FileTime.fromMillis(0L));
-                zipOutputStream.putNextEntry(zipEntry);
-                try (InputStream inputStream = file.openInputStream()) {
-                    final byte[] buffer = new byte[1024];
-                    int read;
-                    while ((read = inputStream.read(buffer)) >= 0) {
-                        zipOutputStream.write(buffer, 0, read);
-                    }
-                    zipOutputStream.closeEntry();
-                    if (options.protection) {
-                        zipEntry.setCrc(buffer.length);
-                        zipEntry.setSize(new BigInteger(buffer).mod(BigInteger.valueOf(Long.MAX_VALUE)).longValue());
-                    }
+    // The archive only has to be rewritten when an entry or the package options changed
+    private @Nullable File getPackageCache(@NotNull TaskIO io, @NotNull PackageOptions options) throws IOException {
+        if (!io.getCache().isEnabled()) return null;
+        List<String> entries = new ArrayList<>();
+        for (me.nelonn.propack.builder.api.file.File file : io.getFiles()) {
+            entries.add(file.getPath() + ':' + io.getCache().fingerprint(file));
+        }
+        Collections.sort(entries);
+        StringBuilder key = new StringBuilder()
+                .append(PACKAGE_CACHE_VERSION).append('\n')
+                .append(options.compressionLevel).append('\n')
+                .append(options.protection).append('\n')
+                .append(options.comment).append('\n')
+                .append(getProject().getBuildConfiguration().isCanonical());
+        for (PackageOptions.CompressionRule rule : options.rules) {
+            key.append('\n').append(rule);
+        }
+        for (String entry : entries) {
+            key.append('\n').append(entry);
+        }
+        return io.getCache().getOutput(getName(), Sha1.fromBytes(key.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * @return SHA-1 of the archive, computed while it is written
+     */
+    private @NotNull Sha1 packageFiles(@NotNull File output, @NotNull FileCollection input, @NotNull PackageOptions options, boolean canonical) {
+        List<me.nelonn.propack.builder.api.file.File> files = new ArrayList<>(input.getFiles());
+        files.sort(Comparator.comparing(me.nelonn.propack.builder.api.file.File::getPath));
+        int threads = Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadId = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new NamedThreadFactory(r -> "propack-package-" + threadId.incrementAndGet()));
+        // entries are compressed ahead on the pool and written in order, the window bounds memory usage
+        int window = threads * 4;
+        Deque<Future<ZipWriter.Entry>> pending = new ArrayDeque<>();
+        Map<PackageOptions.CompressionRule, RuleStats> stats = new LinkedHashMap<>();
+        for (PackageOptions.CompressionRule rule : options.rules) {
+            stats.put(rule, new RuleStats());
+        }
+        stats.put(options.defaultRule, new RuleStats());
+        Sha1.Hasher hasher = Sha1.hasher();
+        try (ZipWriter zipWriter = new ZipWriter(hasher.wrap(Files.newOutputStream(output.toPath())))) {
+            for (me.nelonn.propack.builder.api.file.File file : files) {
+                pending.add(executor.submit(() -> compress(file, options, canonical, stats)));
+                if (pending.size() >= window) {
+                    zipWriter.write(await(pending.poll()));
                 }
             }
+            while (!pending.isEmpty()) {
+                zipWriter.write(await(pending.poll()));
+            }
+            zipWriter.finish(options.comment);
         } catch (IOException e) {
             throw new IllegalStateException("Cannot package files", e);
+        } finally {
+            executor.shutdownNow();
+        }
+        for (Map.Entry<PackageOptions.CompressionRule, RuleStats> entry : stats.entrySet()) {
+            RuleStats ruleStats = entry.getValue();
+            if (ruleStats.entries.get() == 0) continue;
+            PackageOptions.CompressionRule rule = entry.getKey();
+            long size = ruleStats.size.get();
+            long compressedSize = ruleStats.compressedSize.get();
+            LOGGER.info("Compression rule '{}' ({}): {} entries, {} KiB -> {} KiB, saved {} KiB in {} ms of cpu time",
+                    rule.name, rule.stored ? "stored" : "level " + rule.compressionLevel, ruleStats.entries.get(),
+                    size / 1024, compressedSize / 1024, (size - compressedSize) / 1024, ruleStats.nanos.get() / 1_000_000);
         }
+        return hasher.finish();
+    }
+
+    private static @NotNull ZipWriter.Entry compress(@NotNull me.nelonn.propack.builder.api.file.File file,
+                                                     @NotNull PackageOptions options, boolean canonical,
+                                                     @NotNull Map<PackageOptions.CompressionRule, RuleStats> stats) throws IOException {
+        byte[] content;
+        if (canonical && file instanceof JsonFile) {
+            content = ((JsonFile) file).getCanonicalBytes();
+        } else if (file instanceof VirtualFile) {
+            content = ((VirtualFile) file).getBytes();
+        } else {
+            try (InputStream inputStream = file.openInputStream()) {
+                content = IOUtil.readAllBytes(inputStream);
+            }
+        }
+        PackageOptions.CompressionRule rule = options.getRule(file.getPath(), content.length);
+        long startTime = System.nanoTime();
+        ZipWriter.Entry entry = rule.stored
+                ? ZipWriter.Entry.store(file.getPath(), content)
+                : ZipWriter.Entry.deflate(file.getPath(), content, rule.compressionLevel);
+        RuleStats ruleStats = stats.get(rule);
+        ruleStats.nanos.addAndGet(System.nanoTime() - startTime);
+        ruleStats.entries.incrementAndGet();
+        ruleStats.size.addAndGet(entry.getSize());
+        ruleStats.compressedSize.addAndGet(entry.getCompressedSize());
+        if (options.protection) {
+            byte[] buffer = lastCopyBuffer(content);
+            // stored entries are read by their central size, only the crc can be faked
+            entry.setCentralValues(buffer.length, rule.stored ? entry.getSize()
+                    : new BigInteger(buffer).mod(BigInteger.valueOf(Long.MAX_VALUE)).longValue());
+        }
+        return entry;
+    }
+
+    // Contents of the 1 KiB copy buffer after streaming the whole entry through it, the protection values come from it
+    private static byte[] lastCopyBuffer(byte[] content) {
+        byte[] buffer = new byte[1024];
+        if (content.length == 0) return buffer;
+        int lastStart = (content.length - 1) / buffer.length * buffer.length;
+        if (lastStart > 0) {
+            System.arraycopy(content, lastStart - buffer.length, buffer, 0, buffer.length);
+        }
+        System.arraycopy(content, lastStart, buffer, 0, content.length - lastStart);
+        return buffer;
+    }
+
+    private static <T> T await(@NotNull Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static class RuleStats {
+        private final AtomicLong entries = new AtomicLong();
+        private final AtomicLong size = new AtomicLong();
+        private final AtomicLong compressedSize = new AtomicLong();
+        private final AtomicLong nanos = new AtomicLong();
     }
 }
@@ -20,6 +20,7 @@ package me.nelonn.propack.builder.impl.task;
 
 import com.google.gson.JsonObject;
 import me.nelonn.flint.path.Path;
+import me.nelonn.propack.Sha1;
 import me.nelonn.propack.builder.api.Project;
 import me.nelonn.propack.builder.api.file.File;
 import me.nelonn.propack.builder.api.file.JsonFile;
@@ -31,7 +32,10 @@ import me.nelonn.propack.core.asset.ArmorTextureBuilder;
 import me.nelonn.propack.builder.api.task.AbstractTask;
 import me.nelonn.propack.builder.api.task.FileProcessingException;
 import me.nelonn.propack.builder.api.task.TaskBootstrap;
+import me.nelonn.propack.builder.api.task.AssetKind;
+import me.nelonn.propack.builder.api.task.TaskAccess;
 import me.nelonn.propack.core.util.GsonHelper;
+import me.nelonn.propack.core.util.IOUtil;
 import me.nelonn.propack.core.util.PathUtil;
 import me.nelonn.propack.core.util.Util;
 import org.jetbrains.annotations.NotNull;
@@ -41,6 +45,10 @@ import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -54,14 +62,26 @@ public class ProcessArmorTextures extends AbstractTask {
     private static final int DEFAULT_RESOLUTION = 16;
     private static final int HEIGHT_RATIO = 2;
     private static final int WIDTH_RATIO = 4;
+    private static final int ATLAS_CACHE_VERSION = 1;
+    private static final TaskAccess ACCESS = TaskAccess.builder()
+            .writeFiles("content/**.armor.json", "**.png", "include/assets/minecraft/shaders/core/rendertype_armor_cutout_no_cull.fsh")
+            .writeExtras(EXTRA_ARMOR_RESOLUTION)
+            .writeAssets(AssetKind.ARMOR_TEXTURE)
+            .build();
 
     public ProcessArmorTextures(@NotNull Project project) {
         super("processArmorTextures", project);
     }
 
+    @Override
+    public @NotNull TaskAccess getAccess() {
+        return ACCESS;
+    }
+
     @Override
     public void run(@NotNull TaskIO io) throws Exception {
         Map<Color, Armor> armors = new HashMap<>();
+        List<String> cacheKeys = new ArrayList<>();
         for (File file : io.getFiles()) {
             try {
                 String filePath = file.getPath();
@@ -92,6 +112,11 @@ public class ProcessArmorTextures extends AbstractTask {
                 }
                 Armor armor = new Armor(color, layer1, layer2);
                 armors.put(color, armor);
+                if (io.getCache().isEnabled()) {
+                    cacheKeys.add(filePath + ':' + io.getCache().fingerprint(file)
+                            + ':' + (layer1 == null ? "-" : io.getCache().fingerprint(layer1.getSource()))
+                            + ':' + (layer2 == null ? "-" : io.getCache().fingerprint(layer2.getSource())));
+                }
                 io.getAssets().putArmorTexture(new ArmorTextureBuilder(resourcePath).setColor(color)
                         .setHasLayer1(layer1 != null).setHasLayer2(layer2 != null));
             } catch (Exception e) {
@@ -99,7 +124,15 @@ public class ProcessArmorTextures extends AbstractTask {
             }
         }
         int resolution = DEFAULT_RESOLUTION;
-        if (!armors.isEmpty()) {
+        java.io.File cacheDir = armors.isEmpty() ? null : getAtlasCache(io, cacheKeys);
+        java.io.File cachedResolution = cacheDir == null ? null : new java.io.File(cacheDir, "resolution");
+        if (cachedResolution != null && cachedResolution.isFile()) {
+            resolution = Integer.parseInt(IOUtil.readString(cachedResolution).trim());
+            for (int layerId = 1; layerId <= 2; layerId++) {
+                io.getFiles().removeFile(INCLUDED_LEATHER_LAYER + layerId + ".png");
+                io.getFiles().addFile(new RealFile(LEATHER_LAYER + layerId + ".png", new java.io.File(cacheDir, "layer_" + layerId + ".png")));
+            }
+        } else if (!armors.isEmpty()) {
             int maxHeight = DEFAULT_RESOLUTION * HEIGHT_RATIO;
             for (Armor armor : armors.values()) {
                 if (armor.getLayer1() != null) {
@@ -113,8 +146,13 @@ public class ProcessArmorTextures extends AbstractTask {
                     maxHeight = Math.max(image.getHeight(), maxHeight);
                 }
             }
-            compileLayer(io, armors, 1, resolution, maxHeight);
-            compileLayer(io, armors, 2, resolution, maxHeight);
+            java.io.File outputDir = cacheDir != null ? cacheDir : new java.io.File(io.getTempDirectory(), LEATHER_LAYER).getParentFile();
+            compileLayer(io, armors, 1, resolution, maxHeight, new java.io.File(outputDir, "layer_1.png"));
+            compileLayer(io, armors, 2, resolution, maxHeight, new java.io.File(outputDir, "layer_2.png"));
+            if (cachedResolution != null) {
+                // written last so an interrupted build never leaves a half-filled entry
+                Files.write(cachedResolution.toPath(), String.valueOf(resolution).getBytes(StandardCharsets.UTF_8));
+            }
         }
         io.getExtras().put(EXTRA_ARMOR_RESOLUTION, resolution);
         File file = io.getFiles().getFile("include/assets/minecraft/shaders/core/rendertype_armor_cutout_no_cull.fsh");
@@ -124,6 +162,22 @@ public class ProcessArmorTextures extends AbstractTask {
         }
     }
 
+    // The atlas depends on every armor definition, the layer images and the included default layers
+    private java.io.File getAtlasCache(TaskIO io, List<String> cacheKeys) throws IOException {
+        if (!io.getCache().isEnabled()) return null;
+        List<String> keys = new ArrayList<>(cacheKeys);
+        Collections.sort(keys);
+        StringBuilder key = new StringBuilder().append(ATLAS_CACHE_VERSION);
+        for (int layerId = 1; layerId <= 2; layerId++) {
+            File layerDefaultFile = io.getFiles().getFile(INCLUDED_LEATHER_LAYER + layerId + ".png");
+            key.append('\n').append(layerDefaultFile == null ? "-" : io.getCache().fingerprint(layerDefaultFile));
+        }
+        for (String armorKey : keys) {
+            key.append('\n').append(armorKey);
+        }
+        return io.getCache().getOutput(getName(), Sha1.fromBytes(key.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
     private Armor.Layer loadConfiguration(TaskIO io, JsonObject root, String layerKey, Path contentPath) throws IOException {
         String layerImagePath;
         boolean saveImage = false;
@@ -160,16 +214,14 @@ public class ProcessArmorTextures extends AbstractTask {
                 }
             }
         }
-        try (InputStream inputStream = pngFile.openInputStream()) {
-            BufferedImage layerImage = ImageIO.read(inputStream);
-            if (!saveImage) {
-                io.getFiles().removeFile(pngFile.getPath());
-            }
-            return new Armor.Layer(layerImage, frames, speed, interpolation, emissivity);
+        if (!saveImage) {
+            io.getFiles().removeFile(pngFile.getPath());
         }
+        return new Armor.Layer(pngFile, frames, speed, interpolation, emissivity);
     }
 
-    private void compileLayer(TaskIO io, Map<Color, Armor> armors, int layerId, int resolution, int maxHeight) throws IOException {
+    private void compileLayer(TaskIO io, Map<Color, Armor> armors, int layerId, int resolution, int maxHeight,
+                              java.io.File outputFile) throws IOException {
         File layerDefaultFile = io.getFiles().getFile(INCLUDED_LEATHER_LAYER + layerId + ".png");
         if (layerDefaultFile == null) {
             throw new IllegalArgumentException("'" + INCLUDED_LEATHER_LAYER + layerId + ".png' not found");
@@ -200,10 +252,9 @@ public class ProcessArmorTextures extends AbstractTask {
             i++;
         }
         g2.dispose();
-        java.io.File tempLayerFile = new java.io.File(io.getTempDirectory(), LEATHER_LAYER + layerId + ".png");
-        tempLayerFile.getParentFile().mkdirs();
-        ImageIO.write(resultLayer, "png", tempLayerFile);
-        io.getFiles().addFile(new RealFile(LEATHER_LAYER + layerId + ".png", tempLayerFile));
+        outputFile.getParentFile().mkdirs();
+        ImageIO.write(resultLayer, "png", outputFile);
+        io.getFiles().addFile(new RealFile(LEATHER_LAYER + layerId + ".png", outputFile));
         io.getFiles().removeFile(layerDefaultFile.getPath());
     }
 
@@ -241,21 +292,32 @@ public class ProcessArmorTextures extends AbstractTask {
         }
 
         public static class Layer {
-            private final BufferedImage image;
+            private final File source;
+            private BufferedImage image;
             private final int frames;
             private final int speed;
             private final boolean interpolation;
             private final int emissivity;
 
-            public Layer(BufferedImage image, int frames, int speed, boolean interpolation, int emissivity) {
-                this.image = image;
+            public Layer(File source, int frames, int speed, boolean interpolation, int emissivity) {
+                this.source = source;
                 this.frames = Math.max(1, frames);
                 this.speed = speed;
                 this.interpolation = interpolation;
                 this.emissivity = emissivity;
             }
 
-            public BufferedImage getImage() {
+            public File getSource() {
+                return source;
+            }
+
+            // decoded only when the atlas has to be composed
+            public BufferedImage getImage() throws IOException {
+                if (image == null) {
+                    try (InputStream inputStream = source.openInputStream()) {
+                        image = ImageIO.read(inputStream);
+                    }
+                }
                 return image;
             }
 
@@ -29,6 +29,8 @@ import me.nelonn.propack.builder.api.task.AbstractTask;
 import me.nelonn.propack.builder.api.task.FileProcessingException;
 import me.nelonn.propack.builder.api.task.TaskBootstrap;
 import me.nelonn.propack.builder.api.task.TaskIO;
+import me.nelonn.propack.builder.api.task.AssetKind;
+import me.nelonn.propack.builder.api.task.TaskAccess;
 import me.nelonn.propack.core.asset.FontBuilder;
 import me.nelonn.propack.core.util.GsonHelper;
 import me.nelonn.propack.core.util.LogManagerCompat;
@@ -39,11 +41,20 @@ import org.slf4j.Logger;
 public class ProcessFontsTask extends AbstractTask {
     private static final Logger LOGGER = LogManagerCompat.getLogger();
     public static final TaskBootstrap BOOTSTRAP = ProcessFontsTask::new;
+    private static final TaskAccess ACCESS = TaskAccess.builder()
+            .writeFiles("content/**.font.json", "assets/*/font/**.json")
+            .writeAssets(AssetKind.FONT)
+            .build();
 
     public ProcessFontsTask(@NotNull Project project) {
         super("processFonts", project);
     }
 
+    @Override
+    public @NotNull TaskAccess getAccess() {
+        return ACCESS;
+    }
+
     @Override
     public void run(@NotNull TaskIO io) {
         for (File file : io.getFiles()) {
@@ -27,6 +27,7 @@ import me.nelonn.propack.builder.api.task.TaskIO;
 import me.nelonn.propack.builder.api.task.AbstractTask;
 import me.nelonn.propack.builder.api.task.FileProcessingException;
 import me.nelonn.propack.builder.api.task.TaskBootstrap;
+import me.nelonn.propack.builder.api.task.TaskAccess;
 import me.nelonn.propack.core.util.GsonHelper;
 import me.nelonn.propack.core.util.LogManagerCompat;
 import me.nelonn.propack.core.util.PathUtil;
@@ -39,11 +40,19 @@ import java.util.Map;
 public class ProcessLanguagesTask extends AbstractTask {
     private static final Logger LOGGER = LogManagerCompat.getLogger();
     public static final TaskBootstrap BOOTSTRAP = ProcessLanguagesTask::new;
+    private static final TaskAccess ACCESS = TaskAccess.builder()
+            .writeFiles("content/**.lang.json", "assets/*/lang/**.json")
+            .build();
 
     public ProcessLanguagesTask(@NotNull Project project) {
         super("processLanguages", project);
     }
 
+    @Override
+    public @NotNull TaskAccess getAccess() {
+        return ACCESS;
+    }
+
     @Override
     public void run(@NotNull TaskIO io) {
         Map<String, JsonFile> languageFiles = new HashMap<>();
@@ -19,10 +19,14 @@
 package me.nelonn.propack.builder.impl.task;
 
 import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import me.nelonn.bestvecs.ImmVec3f;
 import me.nelonn.bestvecs.Vec3f;
 import me.nelonn.flint.path.Key;
 import me.nelonn.flint.path.Path;
+import me.nelonn.propack.Sha1;
+import me.nelonn.propack.asset.CombinedItemModel;
 import me.nelonn.propack.asset.SlotItemModel;
 import me.nelonn.propack.builder.api.Project;
 import me.nelonn.propack.builder.api.file.File;
@@ -31,6 +35,8 @@ import me.nelonn.propack.builder.api.task.AbstractTask;
 import me.nelonn.propack.builder.api.task.FileProcessingException;
 import me.nelonn.propack.builder.api.task.TaskBootstrap;
 import me.nelonn.propack.builder.api.task.TaskIO;
+import me.nelonn.propack.builder.api.task.AssetKind;
+import me.nelonn.propack.builder.api.task.TaskAccess;
 import me.nelonn.propack.builder.api.util.Extra;
 import me.nelonn.propack.builder.impl.MeshesMapBuilder;
 import me.nelonn.propack.core.asset.CombinedItemModelBuilder;
@@ -42,170 +48,92 @@ import me.nelonn.propack.builder.impl.json.mesh.ModelElement;
 import me.nelonn.propack.builder.impl.json.mesh.ModelElementFace;
 import me.nelonn.propack.core.util.*;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.stream.StreamSupport;
 
 public class ProcessModelsTask extends AbstractTask {
     private static final Logger LOGGER = LogManagerCompat.getLogger();
     public static final TaskBootstrap BOOTSTRAP = ProcessModelsTask::new;
     public static final Extra<MeshesMapBuilder> EXTRA_MESH_MAPPING_BUILDER = new Extra<>(MeshesMapBuilder.class, "propack.process_models.mesh_mapping_builder");
+    private static final int GENERATED_MESHES_CACHE_VERSION = 2;
+    private static final TaskAccess ACCESS = TaskAccess.builder()
+            .writeFiles("content/**.model.json", "content/**.mesh.json", "assets/*/models/**.json",
+                    "include/assets/propack/items/**.json", "include/assets/*/models/item/**.json")
+            .writeExtras(EXTRA_MESH_MAPPING_BUILDER)
+            .writeAssets(AssetKind.ITEM_MODEL)
+            .build();
 
     public ProcessModelsTask(@NotNull Project project) {
         super("processModels", project);
     }
 
+    @Override
+    public @NotNull TaskAccess getAccess() {
+        return ACCESS;
+    }
+
     @Override
     public void run(@NotNull TaskIO io) {
         MeshesMapBuilder meshesMapBuilder = new MeshesMapBuilder(getProject().getBuildConfiguration().getCustomModelDataStart());
         io.getExtras().put(EXTRA_MESH_MAPPING_BUILDER, meshesMapBuilder);
         Map<Path, Set<Key>> meshesToOverride = new HashMap<>();
+        List<ModelResult> results = new ArrayList<>();
         for (File file : io.getFiles()) {
             try {
                 String filePath = file.getPath();
                 if (!filePath.startsWith("content/") || !filePath.endsWith(".model.json")) continue;
                 io.getFiles().removeFile(filePath);
-                if (!(file instanceof JsonFile)) {
-                    LOGGER.error("{} :: model file is not Json", filePath);
-                    continue;
-                }
-                JsonObject rootJson = ((JsonFile) file).getContent();
-                Path resourcePath = PathUtil.resourcePath(filePath, ".model.json");
-                String type = GsonHelper.getString(rootJson, "Type");
-                String rawMeshPath = GsonHelper.getString(rootJson, "Mesh");
-                Path meshPath = PathUtil.resolve(rawMeshPath, resourcePath);
-                Set<Key> targetItems = parseTarget(rootJson);
-                ItemModelBuilder builder;
-                if (type.equals("DefaultItemModel")) {
-                    builder = new DefaultItemModelBuilder(resourcePath).setMesh(meshPath);
-                } else if (type.equals("CombinedItemModel")) {
-                    File meshFile = io.getFiles().getFile(PathUtil.contentPath(meshPath) + ".mesh.json");
-                    if (!(meshFile instanceof JsonFile)) {
-                        LOGGER.error("{} :: mesh not found: {}", filePath, rawMeshPath);
-                        continue;
-                    }
-                    JsonModel baseMesh = JsonModel.deserialize(((JsonFile) meshFile).getContent());
-                    Map<String, String> baseTextureMap = baseMesh.getTextureMap();
-                    processTextureMap(baseTextureMap, resourcePath);
-                    JsonObject elementsObject = GsonHelper.getObject(rootJson, "Elements");
-                    Map<String, JsonModel> combinationElements = new HashMap<>();
-                    for (Map.Entry<String, JsonElement> elementEntry : elementsObject.entrySet()) {
-                        JsonElement jsonElement = elementEntry.getValue();
-                        JsonModel elementMesh = parseGeneratingMesh(jsonElement, resourcePath, io);
-                        combinationElements.put(elementEntry.getKey(), elementMesh);
-                    }
-                    for (List<String> combination : CombinationUtil.generateAllCombinations(combinationElements.keySet())) {
-                        String combinationStr = String.join("&", combination.stream().sorted().toArray(String[]::new));
-                        String hex = Integer.toHexString(combinationStr.hashCode());
-                        Path generatedPath = PathUtil.append(resourcePath, '-' + hex);
-                        Map<String, String> textureMap = new HashMap<>(baseTextureMap);
-                        List<ModelElement> modelElements = baseMesh.getElements();
-                        for (String combinationElement : combination) {
-                            JsonModel combMesh = combinationElements.get(combinationElement);
-                            for (Map.Entry<String, String> textureEntry : combMesh.getTextureMap().entrySet()) {
-                                textureMap.put(combinationElement + '.' + textureEntry.getKey(), textureEntry.getValue());
-                            }
-                            for (ModelElement modelElement : combMesh.getElements()) {
-                                Map<Direction, ModelElementFace> faces = new EnumMap<>(modelElement.faces);
-                                for (Map.Entry<Direction, ModelElementFace> faceEntry : faces.entrySet()) {
-                                    ModelElementFace face = faceEntry.getValue();
-                                    String texture = '#' + combinationElement + '.' + face.textureId.substring(1);
-                                    faceEntry.setValue(new ModelElementFace(face.cullFace, face.tintIndex, texture, face.textureData));
-                                }
-                                modelElements.add(new ModelElement(modelElement.from, modelElement.to, faces,
-                                        modelElement.rotation, modelElement.shade));
-                            }
-                        }
-                        JsonModel generatedMesh = new JsonModel(baseMesh.getParent(), baseMesh.getTextureSize(),
-                                textureMap, modelElements, baseMesh.useAmbientOcclusion(), baseMesh.getGuiLight(),
-                                baseMesh.getTransformations(), baseMesh.getOverrides());
-                        io.getFiles().addFile(new JsonFile(PathUtil.contentPath(generatedPath) + ".mesh.json", generatedMesh.serialize()));
-                        meshesToOverride.put(generatedPath, new HashSet<>(targetItems));
-                    }
-                    builder = new CombinedItemModelBuilder(resourcePath).setMesh(meshPath).setElements(combinationElements.keySet());
-                } else if (type.equals("SlotItemModel")) {
-                    File meshFile = io.getFiles().getFile(PathUtil.contentPath(meshPath) + ".mesh.json");
-                    if (!(meshFile instanceof JsonFile)) {
-                        LOGGER.error("{} :: mesh not found: {}", filePath, rawMeshPath);
-                        continue;
-                    }
-                    JsonModel baseMesh = JsonModel.deserialize(((JsonFile) meshFile).getContent());
-                    Map<String, String> rootTextureMap = baseMesh.getTextureMap();
-                    processTextureMap(rootTextureMap, meshPath);
-                    JsonObject slotsJson = GsonHelper.getObject(rootJson, "Slots");
-                    Map<String, Map<String, JsonModel>> slots = new HashMap<>();
-                    for (Map.Entry<String, JsonElement> slotEntry : slotsJson.entrySet()) {
-                        JsonObject slotJson = slotEntry.getValue().getAsJsonObject();
-                        Map<String, JsonModel> slotElements = new HashMap<>();
-                        for (Map.Entry<String, JsonElement> elementEntry : slotJson.entrySet()) {
-                            JsonElement elementJson = elementEntry.getValue();
-                            JsonModel elementMesh = parseGeneratingMesh(elementJson, resourcePath, io);
-                            slotElements.put(elementEntry.getKey(), elementMesh);
-                        }
-                        slots.put(slotEntry.getKey(), slotElements);
-                    }
-                    LinkedHashMap<String, List<String>> slotsMap = new LinkedHashMap<>();
-                    for (Map.Entry<String, Map<String, JsonModel>> slot : slots.entrySet()) {
-                        slotsMap.put(slot.getKey(), new ArrayList<>(slot.getValue().keySet()));
-                    }
-                    for (Map<String, String> combination : CombinationUtil.generateSlotCombinations(slotsMap)) {
-                        StringBuilder sb = new StringBuilder();
-                        AtomicBoolean empty = new AtomicBoolean(true);
-                        Map<String, String> textureMap = new HashMap<>(rootTextureMap);
-                        List<ModelElement> modelElements = baseMesh.getElements();
-                        combination.keySet().stream().sorted().forEach(slotName -> {
-                            if (sb.length() > 0) {
-                                sb.append('&');
-                            }
-                            sb.append(slotName).append(':');
-                            String elementName = combination.get(slotName);
-                            if (elementName != null) {
-                                sb.append(elementName);
-                                empty.set(false);
-                                JsonModel elementMesh = slots.get(slotName).get(elementName);
-                                for (Map.Entry<String, String> textureEntry : elementMesh.getTextureMap().entrySet()) {
-                                    textureMap.put(slotName + '.' + textureEntry.getKey(), textureEntry.getValue());
-                                }
-                                for (ModelElement modelElement : elementMesh.getElements()) {
-                                    Map<Direction, ModelElementFace> faces = new EnumMap<>(modelElement.faces);
-                                    for (Map.Entry<Direction, ModelElementFace> faceEntry : faces.entrySet()) {
-                                        ModelElementFace face = faceEntry.getValue();
-                                        String texture = '#' + slotName + '.' + face.textureId.substring(1);
-                                        faceEntry.setValue(new ModelElementFace(face.cullFace, face.tintIndex, texture, face.textureData));
-                                    }
-                                    modelElements.add(new ModelElement(modelElement.from, modelElement.to, faces,
-                                            modelElement.rotation, modelElement.shade));
-                                }
-                            }
-                        });
-                        if (empty.get()) continue;
-                        String hex = SlotItemModel.hash(sb.toString());
-                        Path generatedPath = PathUtil.append(resourcePath, '-' + hex);
-                        JsonModel generatedMesh = new JsonModel(baseMesh.getParent(), baseMesh.getTextureSize(),
-                                textureMap, modelElements, baseMesh.useAmbientOcclusion(), baseMesh.getGuiLight(),
-                                baseMesh.getTransformations(), baseMesh.getOverrides());
-                        io.getFiles().addFile(new JsonFile(PathUtil.contentPath(generatedPath) + ".mesh.json", generatedMesh.serialize()));
-                        meshesToOverride.put(generatedPath, new HashSet<>(targetItems));
-                    }
-                    Map<String, SlotItemModel.Slot> resultSlots = new HashMap<>();
-                    for (Map.Entry<String, List<String>> slot : slotsMap.entrySet()) {
-                        SlotItemModel.Slot resultSlot = new SlotItemModel.Slot(slot.getKey(), new HashSet<>(slot.getValue()));
-                        resultSlots.put(resultSlot.getName(), resultSlot);
-                    }
-                    builder = new SlotItemModelBuilder(resourcePath).setMesh(meshPath).setSlots(resultSlots);
-                } else {
-                    LOGGER.error("{} :: Unknown model type: '{}'", filePath, type);
-                    continue;
+                ModelResult result = prepareModel(io, file);
+                if (result != null) {
+                    results.add(result);
                 }
-                Set<Key> toOverride = meshesToOverride.computeIfAbsent(meshPath, key -> new HashSet<>());
-                toOverride.addAll(targetItems);
-                builder.setTargetItems(targetItems);
-                io.getAssets().putItemModel(builder);
             } catch (Exception e) {
                 throw new FileProcessingException(file.getPath(), e);
             }
         }
+        // meshes are expanded in parallel, each model is applied in path order as soon as it and the ones before it
+        // are done, so custom model data stays stable and finished results are released early.
+        // Failures are rethrown after the stream, see GenerationGuard
+        int meshBudget = getProject().getBuildConfiguration().getMeshBudget();
+        Set<Path> generatedPaths = new HashSet<>();
+        AtomicReference<ModelResult> failed = new AtomicReference<>();
+        results.parallelStream().map(result -> {
+            if (failed.get() == null) {
+                result.generate(io, meshBudget);
+            }
+            return result;
+        }).forEachOrdered(result -> {
+            if (failed.get() != null) return;
+            if (result.error != null) {
+                failed.set(result);
+                return;
+            }
+            for (Path generatedPath : result.generatedPaths) {
+                meshesToOverride.put(generatedPath, new HashSet<>(result.targetItems));
+            }
+            generatedPaths.addAll(result.generatedPaths);
+            Set<Key> toOverride = meshesToOverride.computeIfAbsent(result.meshPath, key -> new HashSet<>());
+            toOverride.addAll(result.targetItems);
+            result.builder.setTargetItems(result.targetItems);
+            io.getAssets().putItemModel(result.builder);
+            result.generatedPaths = Collections.emptySet();
+        });
+        if (failed.get() != null) {
+            throw new FileProcessingException(failed.get().file.getPath(), failed.get().error);
+        }
+        results.clear();
+        Map<Path, JsonObject> meshes = new LinkedHashMap<>();
         for (File file : io.getFiles()) {
             try {
                 String filePath = file.getPath();
@@ -226,18 +154,37 @@ public class ProcessModelsTask extends AbstractTask {
                 jsonModel = new JsonModel(parent, jsonModel.getTextureSize(), textureMap, jsonModel.getElements(),
                         jsonModel.useAmbientOcclusion(), jsonModel.getGuiLight(), jsonModel.getTransformations(),
                         jsonModel.getOverrides());
-                JsonObject resultJson = jsonModel.serialize();
-                io.getFiles().addFile(new JsonFile("assets/" + resourcePath.namespace() + "/models/" + resourcePath.value() + ".json", resultJson));
-                Set<Key> toOverride = meshesToOverride.get(resourcePath);
-                if (toOverride != null) {
-                    for (Key itemId : toOverride) {
-                        meshesMapBuilder.getMapper(itemId).add(resourcePath);
-                    }
-                }
+                meshes.put(resourcePath, jsonModel.serialize());
             } catch (Exception e) {
                 throw new FileProcessingException(file.getPath(), e);
             }
         }
+        Map<Path, Path> canonicalMeshes = findCanonicalMeshes(meshes, generatedPaths);
+        int aliases = 0;
+        int dropped = 0;
+        for (Map.Entry<Path, JsonObject> mesh : meshes.entrySet()) {
+            Path resourcePath = mesh.getKey();
+            Path canonical = canonicalMeshes.get(resourcePath);
+            if (!canonical.equals(resourcePath)) {
+                aliases++;
+            }
+            // authored duplicates keep their file, other assets may reference them by path
+            if (canonical.equals(resourcePath) || !generatedPaths.contains(resourcePath)) {
+                io.getFiles().addFile(new JsonFile("assets/" + resourcePath.namespace() + "/models/" + resourcePath.value() + ".json", mesh.getValue()));
+            } else {
+                dropped++;
+            }
+            Set<Key> toOverride = meshesToOverride.get(resourcePath);
+            if (toOverride != null) {
+                for (Key itemId : toOverride) {
+                    meshesMapBuilder.getMapper(itemId).add(resourcePath, canonical);
+                }
+            }
+        }
+        if (aliases > 0) {
+            LOGGER.info("{} meshes are duplicates of others and share their custom model data, {} generated model files dropped",
+                    aliases, dropped);
+        }
         // overriding default models (custom_model_data)
         for (MeshesMapBuilder.ItemEntry itemEntry : meshesMapBuilder.getMappers()) {
             if (getProject().getBuildConfiguration().isGenerateItemModels()) {
@@ -270,6 +217,248 @@ public class ProcessModelsTask extends AbstractTask {
         }
     }
 
+    // Cache keys are computed here on the build thread, before any element mesh gets parsed by the generators
+    private @Nullable ModelResult prepareModel(TaskIO io, File file) throws IOException {
+        String filePath = file.getPath();
+        if (!(file instanceof JsonFile)) {
+            LOGGER.error("{} :: model file is not Json", filePath);
+            return null;
+        }
+        JsonObject rootJson = ((JsonFile) file).getContent();
+        Path resourcePath = PathUtil.resourcePath(filePath, ".model.json");
+        String type = GsonHelper.getString(rootJson, "Type");
+        String rawMeshPath = GsonHelper.getString(rootJson, "Mesh");
+        Path meshPath = PathUtil.resolve(rawMeshPath, resourcePath);
+        Set<Key> targetItems = parseTarget(rootJson);
+        ModelResult result = new ModelResult(file, resourcePath, meshPath, targetItems);
+        if (type.equals("DefaultItemModel")) {
+            result.builder = new DefaultItemModelBuilder(resourcePath).setMesh(meshPath);
+        } else if (type.equals("CombinedItemModel")) {
+            File meshFile = io.getFiles().getFile(PathUtil.contentPath(meshPath) + ".mesh.json");
+            if (!(meshFile instanceof JsonFile)) {
+                LOGGER.error("{} :: mesh not found: {}", filePath, rawMeshPath);
+                return null;
+            }
+            JsonObject elementsObject = GsonHelper.getObject(rootJson, "Elements");
+            List<JsonElement> elementJsons = new ArrayList<>();
+            for (Map.Entry<String, JsonElement> elementEntry : elementsObject.entrySet()) {
+                elementJsons.add(elementEntry.getValue());
+            }
+            CombinedItemModel.Constraints constraints = parseConstraints(rootJson, elementsObject.keySet());
+            result.cacheFile = getGeneratedMeshesCache(io, resourcePath, rootJson, (JsonFile) meshFile, elementJsons);
+            result.generator = sink -> generateCombinedMeshes(io, resourcePath, (JsonFile) meshFile, elementsObject, constraints, sink);
+            result.builder = new CombinedItemModelBuilder(resourcePath).setMesh(meshPath)
+                    .setElements(new HashSet<>(elementsObject.keySet())).setConstraints(constraints);
+        } else if (type.equals("SlotItemModel")) {
+            File meshFile = io.getFiles().getFile(PathUtil.contentPath(meshPath) + ".mesh.json");
+            if (!(meshFile instanceof JsonFile)) {
+                LOGGER.error("{} :: mesh not found: {}", filePath, rawMeshPath);
+                return null;
+            }
+            JsonObject slotsJson = GsonHelper.getObject(rootJson, "Slots");
+            LinkedHashMap<String, List<String>> slotsMap = new LinkedHashMap<>();
+            List<JsonElement> elementJsons = new ArrayList<>();
+            for (Map.Entry<String, JsonElement> slotEntry : slotsJson.entrySet()) {
+                JsonObject slotJson = slotEntry.getValue().getAsJsonObject();
+                slotsMap.put(slotEntry.getKey(), new ArrayList<>(slotJson.keySet()));
+                for (Map.Entry<String, JsonElement> elementEntry : slotJson.entrySet()) {
+                    elementJsons.add(elementEntry.getValue());
+                }
+            }
+            result.cacheFile = getGeneratedMeshesCache(io, resourcePath, rootJson, (JsonFile) meshFile, elementJsons);
+            result.generator = sink -> generateSlotMeshes(io, resourcePath, meshPath, (JsonFile) meshFile, slotsJson, slotsMap, sink);
+            Map<String, SlotItemModel.Slot> resultSlots = new HashMap<>();
+            for (Map.Entry<String, List<String>> slot : slotsMap.entrySet()) {
+                SlotItemModel.Slot resultSlot = new SlotItemModel.Slot(slot.getKey(), new HashSet<>(slot.getValue()));
+                resultSlots.put(resultSlot.getName(), resultSlot);
+            }
+            result.builder = new SlotItemModelBuilder(resourcePath).setMesh(meshPath).setSlots(resultSlots);
+        } else {
+            LOGGER.error("{} :: Unknown model type: '{}'", filePath, type);
+            return null;
+        }
+        return result;
+    }
+
+    private void generateCombinedMeshes(TaskIO io, Path resourcePath, JsonFile meshFile, JsonObject elementsObject,
+                                        CombinedItemModel.Constraints constraints, MeshSink sink) {
+        JsonModel baseMesh = JsonModel.deserialize(meshFile.getContent());
+        Map<String, String> baseTextureMap = baseMesh.getTextureMap();
+        processTextureMap(baseTextureMap, resourcePath);
+        Map<String, JsonModel> combinationElements = new LinkedHashMap<>();
+        for (Map.Entry<String, JsonElement> elementEntry : elementsObject.entrySet()) {
+            JsonElement jsonElement = elementEntry.getValue();
+            JsonModel elementMesh = parseGeneratingMesh(jsonElement, resourcePath, io);
+            combinationElements.put(elementEntry.getKey(), elementMesh);
+        }
+        List<String> elementNames = new ArrayList<>(combinationElements.keySet());
+        Collections.sort(elementNames);
+        long startTime = System.nanoTime();
+        Spliterator<List<String>> combinations;
+        if (constraints.getWhitelist().isEmpty()) {
+            int maxElements = constraints.getMaxElements() > 0 ? constraints.getMaxElements() : elementNames.size();
+            combinations = CombinationUtil.subsetSpliterator(elementNames, maxElements);
+        } else {
+            List<List<String>> whitelist = new ArrayList<>();
+            for (Set<String> combination : constraints.getWhitelist()) {
+                List<String> sorted = new ArrayList<>(combination);
+                Collections.sort(sorted);
+                whitelist.add(sorted);
+            }
+            whitelist.sort(Comparator.comparing(Object::toString));
+            combinations = whitelist.spliterator();
+        }
+        long count = combinations.estimateSize();
+        GenerationGuard guard = new GenerationGuard(resourcePath, getProject().getBuildConfiguration().getMeshBudget());
+        StreamSupport.stream(combinations, true)
+                .filter(constraints::allows)
+                .filter(combination -> guard.tryAcquire())
+                .map(combination -> guard.run(() -> {
+                    String combinationStr = String.join("&", combination);
+                    String hex = Integer.toHexString(combinationStr.hashCode());
+                    Path generatedPath = PathUtil.append(resourcePath, '-' + hex);
+                    Map<String, String> textureMap = new HashMap<>(baseTextureMap);
+                    List<ModelElement> modelElements = baseMesh.getElements();
+                    for (String combinationElement : combination) {
+                        appendElementMesh(combinationElements.get(combinationElement), combinationElement, textureMap, modelElements);
+                    }
+                    JsonModel generatedMesh = new JsonModel(baseMesh.getParent(), baseMesh.getTextureSize(),
+                            textureMap, modelElements, baseMesh.useAmbientOcclusion(), baseMesh.getGuiLight(),
+                            baseMesh.getTransformations(), baseMesh.getOverrides());
+                    return new AbstractMap.SimpleEntry<>(generatedPath, generatedMesh.serialize());
+                })).filter(Objects::nonNull).forEachOrdered(mesh -> sink.accept(mesh.getKey(), mesh.getValue()));
+        guard.check();
+        LOGGER.info("{} :: generated {} meshes from {} combinations in {} ms", resourcePath, sink.size(),
+                count, (System.nanoTime() - startTime) / 1_000_000);
+    }
+
+    private void generateSlotMeshes(TaskIO io, Path resourcePath, Path meshPath, JsonFile meshFile,
+                                    JsonObject slotsJson, LinkedHashMap<String, List<String>> slotsMap, MeshSink sink) {
+        JsonModel baseMesh = JsonModel.deserialize(meshFile.getContent());
+        Map<String, String> rootTextureMap = baseMesh.getTextureMap();
+        processTextureMap(rootTextureMap, meshPath);
+        // slots in name order, so combination lists line up with the hashed combination string
+        List<String> slotNames = new ArrayList<>(slotsMap.keySet());
+        Collections.sort(slotNames);
+        List<Map<String, JsonModel>> slots = new ArrayList<>();
+        for (String slotName : slotNames) {
+            JsonObject slotJson = GsonHelper.getObject(slotsJson, slotName);
+            Map<String, JsonModel> slotElements = new HashMap<>();
+            for (Map.Entry<String, JsonElement> elementEntry : slotJson.entrySet()) {
+                JsonElement elementJson = elementEntry.getValue();
+                JsonModel elementMesh = parseGeneratingMesh(elementJson, resourcePath, io);
+                slotElements.put(elementEntry.getKey(), elementMesh);
+            }
+            slots.add(slotElements);
+        }
+        List<List<String>> slotElementNames = new ArrayList<>();
+        for (String slotName : slotNames) {
+            slotElementNames.add(slotsMap.get(slotName));
+        }
+        long startTime = System.nanoTime();
+        Spliterator<List<String>> combinations = CombinationUtil.slotSpliterator(slotElementNames);
+        long count = combinations.estimateSize();
+        GenerationGuard guard = new GenerationGuard(resourcePath, getProject().getBuildConfiguration().getMeshBudget());
+        StreamSupport.stream(combinations, true)
+                .filter(combination -> guard.tryAcquire())
+                .map(combination -> guard.run(() -> {
+                    StringBuilder sb = new StringBuilder();
+                    Map<String, String> textureMap = new HashMap<>(rootTextureMap);
+                    List<ModelElement> modelElements = baseMesh.getElements();
+                    for (int i = 0; i < slotNames.size(); i++) {
+                        String slotName = slotNames.get(i);
+                        if (sb.length() > 0) {
+                            sb.append('&');
+                        }
+                        sb.append(slotName).append(':');
+                        String elementName = combination.get(i);
+                        if (elementName != null) {
+                            sb.append(elementName);
+                            appendElementMesh(slots.get(i).get(elementName), slotName, textureMap, modelElements);
+                        }
+                    }
+                    String hex = SlotItemModel.hash(sb.toString());
+                    Path generatedPath = PathUtil.append(resourcePath, '-' + hex);
+                    JsonModel generatedMesh = new JsonModel(baseMesh.getParent(), baseMesh.getTextureSize(),
+                            textureMap, modelElements, baseMesh.useAmbientOcclusion(), baseMesh.getGuiLight(),
+                            baseMesh.getTransformations(), baseMesh.getOverrides());
+                    return new AbstractMap.SimpleEntry<>(generatedPath, generatedMesh.serialize());
+                })).filter(Objects::nonNull).forEachOrdered(mesh -> sink.accept(mesh.getKey(), mesh.getValue()));
+        guard.check();
+        LOGGER.info("{} :: generated {} meshes from {} combinations in {} ms", resourcePath, sink.size(),
+                count, (System.nanoTime() - startTime) / 1_000_000);
+    }
+
+    // Element textures are prefixed with the element or slot name so they do not clash with the base mesh
+    private static void appendElementMesh(JsonModel elementMesh, String prefix, Map<String, String> textureMap,
+                                          List<ModelElement> modelElements) {
+        for (Map.Entry<String, String> textureEntry : elementMesh.getTextureMap().entrySet()) {
+            textureMap.put(prefix + '.' + textureEntry.getKey(), textureEntry.getValue());
+        }
+        for (ModelElement modelElement : elementMesh.getElements()) {
+            Map<Direction, ModelElementFace> faces = new EnumMap<>(modelElement.faces);
+            for (Map.Entry<Direction, ModelElementFace> faceEntry : faces.entrySet()) {
+                ModelElementFace face = faceEntry.getValue();
+                String texture = '#' + prefix + '.' + face.textureId.substring(1);
+                faceEntry.setValue(new ModelElementFace(face.cullFace, face.tintIndex, texture, face.textureData));
+            }
+            modelElements.add(new ModelElement(modelElement.from, modelElement.to, faces,
+                    modelElement.rotation, modelElement.shade));
+        }
+    }
+
+    /**
+     * Meshes with equal canonical content map to one of them, authored meshes are preferred over generated ones
+     *
+     * @return canonical mesh of every mesh, itself if it is unique
+     */
+    private static Map<Path, Path> findCanonicalMeshes(Map<Path, JsonObject> meshes, Set<Path> generatedPaths) {
+        Map<String, Path> byHash = new HashMap<>();
+        Map<Path, Path> canonicalMeshes = new HashMap<>();
+        for (boolean generated : new boolean[]{false, true}) {
+            for (Map.Entry<Path, JsonObject> mesh : meshes.entrySet()) {
+                if (generatedPaths.contains(mesh.getKey()) != generated) continue;
+                String hash = Sha1.fromBytes(GsonHelper.sortKeys(mesh.getValue()).toString().getBytes(StandardCharsets.UTF_8)).asString();
+                Path canonical = byHash.putIfAbsent(hash, mesh.getKey());
+                canonicalMeshes.put(mesh.getKey(), canonical != null ? canonical : mesh.getKey());
+            }
+        }
+        return canonicalMeshes;
+    }
+
+    // Expanded meshes only depend on the model file and the meshes it references
+    private java.io.File getGeneratedMeshesCache(TaskIO io, Path resourcePath, JsonObject rootJson, JsonFile meshFile,
+                                                 List<JsonElement> elementJsons) throws IOException {
+        if (!io.getCache().isEnabled()) return null;
+        StringBuilder key = new StringBuilder()
+                .append(GENERATED_MESHES_CACHE_VERSION).append('\n')
+                .append(resourcePath).append('\n')
+                .append(rootJson).append('\n')
+                .append(io.getCache().fingerprint(meshFile));
+        for (JsonElement elementJson : elementJsons) {
+            File elementMeshFile = io.getFiles().getFile(PathUtil.contentPath(resolveGeneratingMeshPath(elementJson, resourcePath)) + ".mesh.json");
+            key.append('\n').append(elementMeshFile == null ? "-" : io.getCache().fingerprint(elementMeshFile));
+        }
+        return io.getCache().getOutput(getName(), Sha1.fromBytes(key.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Passes the cached meshes to the sink as they are read
+     * @return false if nothing is cached
+     */
+    private static boolean readGeneratedMeshes(@Nullable java.io.File cacheFile, MeshSink sink) throws IOException {
+        if (cacheFile == null || !cacheFile.isFile()) return false;
+        try (JsonReader reader = new JsonReader(Files.newBufferedReader(cacheFile.toPath(), StandardCharsets.UTF_8))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                Path path = Path.of(reader.nextName());
+                sink.accept(path, JsonParser.parseReader(reader).getAsJsonObject());
+            }
+            reader.endObject();
+        }
+        return true;
+    }
+
     private void processTextureMap(@NotNull Map<String, String> textureMap, @NotNull Path resourcePath) {
         for (Map.Entry<String, String> textureEntry : textureMap.entrySet()) {
             String texture = textureEntry.getValue();
@@ -282,6 +471,42 @@ public class ProcessModelsTask extends AbstractTask {
         }
     }
 
+    private static CombinedItemModel.Constraints parseConstraints(JsonObject model, Set<String> elements) {
+        JsonObject constraintsJson = GsonHelper.getObject(model, "Constraints", null);
+        if (constraintsJson == null) return CombinedItemModel.Constraints.NONE;
+        int maxElements = GsonHelper.getInt(constraintsJson, "MaxElements", 0);
+        if (maxElements < 0) {
+            throw new JsonParseException("MaxElements cannot be negative");
+        }
+        List<Set<String>> exclusiveGroups = new ArrayList<>();
+        JsonArray exclusiveArray = GsonHelper.getArray(constraintsJson, "Exclusive", new JsonArray());
+        for (int i = 0; i < exclusiveArray.size(); i++) {
+            exclusiveGroups.add(parseElementSet(GsonHelper.asArray(exclusiveArray.get(i), "Exclusive[" + i + "]"), "Exclusive[" + i + "]", elements));
+        }
+        Set<String> required = parseElementSet(GsonHelper.getArray(constraintsJson, "Required", new JsonArray()), "Required", elements);
+        List<Set<String>> whitelist = new ArrayList<>();
+        JsonArray whitelistArray = GsonHelper.getArray(constraintsJson, "Whitelist", new JsonArray());
+        for (int i = 0; i < whitelistArray.size(); i++) {
+            Set<String> combination = parseElementSet(GsonHelper.asArray(whitelistArray.get(i), "Whitelist[" + i + "]"), "Whitelist[" + i + "]", elements);
+            if (combination.isEmpty()) {
+                throw new JsonParseException("Whitelist[" + i + "] cannot be empty");
+            }
+            whitelist.add(combination);
+        }
+        return new CombinedItemModel.Constraints(maxElements, exclusiveGroups, required, whitelist);
+    }
+
+    private static Set<String> parseElementSet(JsonArray array, String name, Set<String> elements) {
+        Set<String> output = new HashSet<>();
+        Util.forEachStringArray(array, name, element -> {
+            if (!elements.contains(element)) {
+                throw new JsonParseException(name + " contains unknown element '" + element + "'");
+            }
+            output.add(element);
+        });
+        return output;
+    }
+
     private Set<Key> parseTarget(JsonObject model) {
         Set<Key> output = new HashSet<>();
         if (GsonHelper.hasString(model, "Target")) {
@@ -301,16 +526,20 @@ public class ProcessModelsTask extends AbstractTask {
         return output;
     }
 
+    private static Path resolveGeneratingMeshPath(JsonElement jsonElement, Path resourcePath) {
+        if (GsonHelper.isString(jsonElement)) {
+            return PathUtil.resolve(jsonElement.getAsString(), resourcePath);
+        }
+        return PathUtil.resolve(GsonHelper.getString(jsonElement.getAsJsonObject(), "Mesh"), resourcePath);
+    }
+
     private JsonModel parseGeneratingMesh(JsonElement jsonElement, Path resourcePath, TaskIO io) {
-        Path elementMeshPath;
         Vec3f offset = null;
         Vec3f scaleOrigin = null;
         float scaleSize = 0.0F;
-        if (GsonHelper.isString(jsonElement)) {
-            elementMeshPath = PathUtil.resolve(jsonElement.getAsString(), resourcePath);
-        } else {
+        Path elementMeshPath = resolveGeneratingMeshPath(jsonElement, resourcePath);
+        if (!GsonHelper.isString(jsonElement)) {
             JsonObject jsonObject = jsonElement.getAsJsonObject();
-            elementMeshPath = PathUtil.resolve(GsonHelper.getString(jsonObject, "Mesh"), resourcePath);
             offset = Util.parseVec3f(jsonObject, "Offset", ImmVec3f.ZERO);
             JsonObject scaleObject = GsonHelper.getObject(jsonObject, "Scale", null);
             if (scaleObject != null) {
@@ -356,4 +585,165 @@ public class ProcessModelsTask extends AbstractTask {
             cube.rotation.origin = cube.rotation.origin.subtract(origin).multiply(size).add(origin);
         }
     }
+
+    private static final class ModelResult {
+        private final File file;
+        private final Path resourcePath;
+        private final Path meshPath;
+        private final Set<Key> targetItems;
+        private ItemModelBuilder builder;
+        private java.io.File cacheFile;
+        private Generator generator;
+        private Set<Path> generatedPaths = Collections.emptySet();
+        private Exception error;
+
+        private ModelResult(File file, Path resourcePath, Path meshPath, Set<Key> targetItems) {
+            this.file = file;
+            this.resourcePath = resourcePath;
+            this.meshPath = meshPath;
+            this.targetItems = targetItems;
+        }
+
+        private void generate(TaskIO io, int meshBudget) {
+            if (generator == null) return;
+            try {
+                MeshSink cached = new MeshSink(io, null, resourcePath, meshBudget);
+                if (readGeneratedMeshes(cacheFile, cached)) {
+                    LOGGER.info("{} :: {} generated meshes loaded from cache", resourcePath, cached.size());
+                    generatedPaths = cached.paths;
+                    return;
+                }
+                // GenerationGuard enforces the budget while generating
+                try (MeshSink sink = new MeshSink(io, cacheFile, resourcePath, 0)) {
+                    generator.generate(sink);
+                    sink.commit();
+                    generatedPaths = sink.paths;
+                }
+            } catch (Exception e) {
+                generatedPaths = Collections.emptySet();
+                error = e;
+            }
+        }
+    }
+
+    // Takes the meshes of one model in combination order, one call at a time. Meshes go straight into the build
+    // and the cache file, only their paths are kept. Colliding paths are overwritten, the last combination wins.
+    private static final class MeshSink implements Closeable {
+        private final TaskIO io;
+        private final Path resourcePath;
+        private final int budget;
+        private final Set<Path> paths = new LinkedHashSet<>();
+        private java.io.File cacheFile;
+        private java.io.File tempFile;
+        private JsonWriter cacheWriter;
+
+        private MeshSink(TaskIO io, @Nullable java.io.File cacheFile, Path resourcePath, int budget) {
+            this.io = io;
+            this.cacheFile = cacheFile;
+            this.resourcePath = resourcePath;
+            this.budget = budget;
+        }
+
+        private void accept(Path path, JsonObject mesh) {
+            io.getFiles().addFile(new JsonFile(PathUtil.contentPath(path) + ".mesh.json", mesh), true);
+            // the budget may have been lowered since the meshes were cached
+            if (paths.add(path) && budget > 0 && paths.size() > budget) {
+                throw new IllegalArgumentException(resourcePath + " generates more meshes than MeshBudget " + budget);
+            }
+            if (cacheFile == null) return;
+            try {
+                openCache();
+                cacheWriter.name(path.toString());
+                GsonHelper.getGson().toJson(mesh, cacheWriter);
+            } catch (IOException e) {
+                LOGGER.warn("{} :: unable to cache generated meshes", resourcePath, e);
+                discardCache();
+            }
+        }
+
+        private void openCache() throws IOException {
+            if (cacheWriter != null) return;
+            cacheFile.getParentFile().mkdirs();
+            tempFile = new java.io.File(cacheFile.getPath() + ".tmp");
+            cacheWriter = new JsonWriter(Files.newBufferedWriter(tempFile.toPath(), StandardCharsets.UTF_8));
+            cacheWriter.beginObject();
+        }
+
+        private int size() {
+            return paths.size();
+        }
+
+        // called once every mesh was accepted, a failed generation never leaves a partial cache
+        private void commit() throws IOException {
+            if (cacheFile == null) return;
+            openCache();
+            cacheWriter.endObject();
+            cacheWriter.close();
+            cacheWriter = null;
+            Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            cacheFile = null;
+        }
+
+        private void discardCache() {
+            cacheFile = null;
+            if (cacheWriter != null) {
+                try {
+                    cacheWriter.close();
+                } catch (IOException ignored) {
+                }
+                cacheWriter = null;
+            }
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+
+        @Override
+        public void close() {
+            discardCache();
+        }
+    }
+
+    // Nothing is thrown inside the nested parallel streams: on JDK 17 an exception from a parallel stream
+    // running inside another one never completes the outer task when the pool has a single worker, which
+    // is the case for the builder pool on one CPU. Failures are recorded, the remaining combinations are
+    // skipped and the failure is rethrown after the stream.
+    private static final class GenerationGuard {
+        private final Path resourcePath;
+        private final int budget;
+        private final AtomicInteger count = new AtomicInteger();
+        private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+        private GenerationGuard(Path resourcePath, int budget) {
+            this.resourcePath = resourcePath;
+            this.budget = budget;
+        }
+
+        private boolean tryAcquire() {
+            if (failure.get() != null) return false;
+            if (budget > 0 && count.incrementAndGet() > budget) {
+                failure.compareAndSet(null, new IllegalArgumentException(resourcePath + " generates more meshes than MeshBudget " + budget));
+                return false;
+            }
+            return true;
+        }
+
+        private <T> @Nullable T run(Supplier<T> supplier) {
+            try {
+                return supplier.get();
+            } catch (RuntimeException e) {
+                failure.compareAndSet(null, e);
+                return null;
+            }
+        }
+
+        private void check() {
+            RuntimeException e = failure.get();
+            if (e != null) throw e;
+        }
+    }
+
+    private interface Generator {
+        void generate(MeshSink sink) throws IOException;
+    }
 }
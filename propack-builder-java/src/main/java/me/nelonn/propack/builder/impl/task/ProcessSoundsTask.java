@@ -29,6 +29,8 @@ import me.nelonn.propack.builder.api.task.AbstractTask;
 import me.nelonn.propack.builder.api.task.FileProcessingException;
 import me.nelonn.propack.builder.api.task.TaskBootstrap;
 import me.nelonn.propack.builder.api.task.TaskIO;
+import me.nelonn.propack.builder.api.task.AssetKind;
+import me.nelonn.propack.builder.api.task.TaskAccess;
 import me.nelonn.propack.core.asset.SoundAssetBuilder;
 import me.nelonn.propack.builder.impl.json.sound.Sound;
 import me.nelonn.propack.builder.impl.json.sound.SoundEntry;
@@ -53,11 +55,20 @@ import java.util.concurrent.CompletableFuture;
 public class ProcessSoundsTask extends AbstractTask {
     private static final Logger LOGGER = LogManagerCompat.getLogger();
     public static final TaskBootstrap BOOTSTRAP = ProcessSoundsTask::new;
+    private static final TaskAccess ACCESS = TaskAccess.builder()
+            .writeFiles("content/**.wav", "content/**.mp3", "content/**.sound.json", "assets/*/sounds.json")
+            .writeAssets(AssetKind.SOUND)
+            .build();
 
     public ProcessSoundsTask(@NotNull Project project) {
         super("processSounds", project);
     }
 
+    @Override
+    public @NotNull TaskAccess getAccess() {
+        return ACCESS;
+    }
+
     @Override
     public void run(@NotNull TaskIO io) {
         // Converting sounds
@@ -18,142 +18,72 @@
 
 package me.nelonn.propack.builder.impl.task;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
 import me.nelonn.flint.path.Key;
 import me.nelonn.flint.path.Path;
-import me.nelonn.propack.asset.SlotItemModel;
 import me.nelonn.propack.builder.api.Project;
 import me.nelonn.propack.builder.api.task.AbstractTask;
 import me.nelonn.propack.builder.api.task.TaskBootstrap;
 import me.nelonn.propack.builder.api.task.TaskIO;
+import me.nelonn.propack.builder.api.task.AssetKind;
+import me.nelonn.propack.builder.api.task.TaskAccess;
 import me.nelonn.propack.builder.api.util.Extra;
 import me.nelonn.propack.builder.impl.MeshesMapBuilder;
-import me.nelonn.propack.core.asset.*;
-import me.nelonn.propack.core.util.LogManagerCompat;
+import me.nelonn.propack.core.loader.ProPackIndexFormat;
 import org.jetbrains.annotations.NotNull;
-import org.slf4j.Logger;
 
-import java.awt.*;
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
-import java.nio.charset.StandardCharsets;
+import java.io.OutputStream;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
 import java.util.Map;
 
 public class SerializeTask extends AbstractTask {
-    private static final Logger LOGGER = LogManagerCompat.getLogger();
     public static final TaskBootstrap BOOTSTRAP = SerializeTask::new;
     public static final Extra<File> EXTRA_FILE = new Extra<>(File.class, "propack.serialize.file");
+    private static final TaskAccess ACCESS = TaskAccess.builder()
+            .readAssets(AssetKind.values())
+            .readExtras(ProcessModelsTask.EXTRA_MESH_MAPPING_BUILDER)
+            .writeExtras(EXTRA_FILE)
+            .build();
 
     public SerializeTask(@NotNull Project project) {
         super("serialize", project);
     }
 
+    @Override
+    public @NotNull TaskAccess getAccess() {
+        return ACCESS;
+    }
+
     @Override
     public void run(@NotNull TaskIO io) {
         File buildDir = getProject().getBuildDir();
         if (!buildDir.exists()) {
             buildDir.mkdirs();
         }
-        JsonObject root = new JsonObject();
-        root.addProperty("version", 1);
-
-        root.addProperty("name", getProject().getName());
-
-        JsonObject resources = new JsonObject();
-        root.add("resources", resources);
-
-        JsonObject itemModels = new JsonObject();
-        for (ItemModelBuilder itemModel : io.getAssets().getItemModels()) {
-            JsonObject itemModelObject = new JsonObject();
-            if (itemModel instanceof DefaultItemModelBuilder) {
-                DefaultItemModelBuilder defaultModel = (DefaultItemModelBuilder) itemModel;
-                itemModelObject.addProperty("Type", "DefaultItemModel");
-                itemModelObject.addProperty("Mesh", defaultModel.getMesh().toString());
-                JsonArray targetItems = new JsonArray();
-                for (Key targetItemId : defaultModel.getTargetItems()) {
-                    targetItems.add(targetItemId.toString());
-                }
-                itemModelObject.add("Target", targetItems);
-            } else if (itemModel instanceof CombinedItemModelBuilder) {
-                CombinedItemModelBuilder combinedModel = (CombinedItemModelBuilder) itemModel;
-                itemModelObject.addProperty("Type", "CombinedItemModel");
-                itemModelObject.addProperty("Mesh", combinedModel.getMesh().toString());
-                JsonArray elementsArray = new JsonArray(combinedModel.getElements().size());
-                combinedModel.getElements().forEach(elementsArray::add);
-                itemModelObject.add("Elements", elementsArray);
-                JsonArray targetItems = new JsonArray();
-                for (Key targetItemId : combinedModel.getTargetItems()) {
-                    targetItems.add(targetItemId.toString());
-                }
-                itemModelObject.add("Target", targetItems);
-            } else if (itemModel instanceof SlotItemModelBuilder) {
-                SlotItemModelBuilder slotModel = (SlotItemModelBuilder) itemModel;
-                itemModelObject.addProperty("Type", "SlotItemModel");
-                itemModelObject.addProperty("Mesh", slotModel.getMesh().toString());
-                JsonObject slotsObject = new JsonObject();
-                itemModelObject.add("Slots", slotsObject);
-                for (SlotItemModel.Slot slot : slotModel.getSlots().values()) {
-                    JsonArray slotEntries = new JsonArray(slot.getEntries().size());
-                    slot.getEntries().forEach(slotEntries::add);
-                    slotsObject.add(slot.getName(), slotEntries);
-                }
-                JsonArray targetItems = new JsonArray();
-                for (Key targetItemId : slotModel.getTargetItems()) {
-                    targetItems.add(targetItemId.toString());
-                }
-                itemModelObject.add("Target", targetItems);
-            }
-            itemModels.add(itemModel.getPath().toString(), itemModelObject);
-        }
-        resources.add("item_models", itemModels);
-
-        JsonObject sounds = new JsonObject();
-        for (SoundAssetBuilder soundAsset : io.getAssets().getSounds()) {
-            sounds.addProperty(soundAsset.getPath().toString(), soundAsset.getSoundPath().toString());
-        }
-        resources.add("sounds", sounds);
-
-        JsonObject armorTextures = new JsonObject();
-        for (ArmorTextureBuilder armorTexture : io.getAssets().getArmorTextures()) {
-            JsonObject armorTextureObject = new JsonObject();
-            Color color = armorTexture.getColor();
-            String hex = String.format("#%02x%02x%02x", color.getRed(), color.getGreen(), color.getBlue());
-            armorTextureObject.addProperty("Color", hex);
-            armorTextureObject.addProperty("Layer1", armorTexture.hasLayer1());
-            armorTextureObject.addProperty("Layer2", armorTexture.hasLayer2());
-            armorTextures.add(armorTexture.getPath().toString(), armorTextureObject);
-        }
-        resources.add("armor_textures", armorTextures);
-
-        JsonObject fonts = new JsonObject();
-        for (FontBuilder font : io.getAssets().getFonts()) {
-            fonts.addProperty(font.getPath().toString(), font.getFontPath().toString());
-        }
-        resources.add("fonts", fonts);
-
         MeshesMapBuilder meshesMapBuilder = io.getExtras().get(ProcessModelsTask.EXTRA_MESH_MAPPING_BUILDER);
-        JsonObject meshMappingObject = new JsonObject();
+        Map<Key, Map<Path, Integer>> meshMapping = new HashMap<>();
         for (MeshesMapBuilder.ItemEntry itemEntry : meshesMapBuilder.getMappers()) {
-            JsonObject mapping = new JsonObject();
-            for (Map.Entry<Integer, Path> entry : itemEntry.getMap().entrySet()) {
-                mapping.addProperty(entry.getValue().toString(), entry.getKey());
-            }
-            meshMappingObject.add(itemEntry.getItemId().toString(), mapping);
+            meshMapping.put(itemEntry.getItemId(), itemEntry.getMeshes());
         }
-        resources.add("mesh_mapping", meshMappingObject);
 
         File outputFile = new File(buildDir, getProject().getName() + ".propack");
-        if (outputFile.exists()) {
-            try {
-                Files.delete(outputFile.toPath());
-            } catch (Exception e) {
-                LOGGER.error("Unable to delete " + outputFile, e);
-            }
+        // written aside and moved into place, a failed build never leaves a truncated index
+        File tempFile = new File(buildDir, getProject().getName() + ".propack.tmp");
+        try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(tempFile.toPath()))) {
+            ProPackIndexFormat.write(outputStream, getProject().getName(),
+                    io.getAssets().getItemModels(),
+                    io.getAssets().getSounds(),
+                    io.getAssets().getArmorTextures(),
+                    io.getAssets().getFonts(),
+                    meshMapping);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
         }
-        try (FileOutputStream fileOutputStream = new FileOutputStream(outputFile)) {
-            fileOutputStream.write(root.toString().getBytes(StandardCharsets.UTF_8));
+        try {
+            Files.move(tempFile.toPath(), outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
             io.getExtras().put(EXTRA_FILE, outputFile);
         } catch (Exception e) {
             throw new RuntimeException(e);
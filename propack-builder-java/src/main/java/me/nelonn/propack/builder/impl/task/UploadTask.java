@@ -25,6 +25,7 @@ import me.nelonn.propack.builder.api.hosting.Hosting;
 import me.nelonn.propack.builder.api.task.AbstractTask;
 import me.nelonn.propack.builder.api.task.TaskBootstrap;
 import me.nelonn.propack.builder.api.task.TaskIO;
+import me.nelonn.propack.builder.api.task.TaskAccess;
 import me.nelonn.propack.builder.api.util.Extra;
 import me.nelonn.propack.core.util.LogManagerCompat;
 import org.jetbrains.annotations.NotNull;
@@ -36,11 +37,20 @@ public class UploadTask extends AbstractTask {
     private static final Logger LOGGER = LogManagerCompat.getLogger();
     public static final TaskBootstrap BOOTSTRAP = UploadTask::new;
     public static final Extra<UploadedPack> EXTRA_UPLOADED_PACK = new Extra<>(UploadedPack.class, "propack.upload.uploaded_pack");
+    private static final TaskAccess ACCESS = TaskAccess.builder()
+            .readExtras(PackageTask.EXTRA_ZIP, PackageTask.EXTRA_SHA1)
+            .writeExtras(EXTRA_UPLOADED_PACK)
+            .build();
 
     public UploadTask(@NotNull Project project) {
         super("upload", project);
     }
 
+    @Override
+    public @NotNull TaskAccess getAccess() {
+        return ACCESS;
+    }
+
     @Override
     public void run(@NotNull TaskIO io) {
         Hosting hosting = getProject().getBuildConfiguration().getHosting();
@@ -0,0 +1,88 @@
+/*
+ * This file is part of ProPack, a Minecraft resource pack toolkit
+ * Copyright (C) Michael Neonov <two.nelonn@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.nelonn.propack.builder.impl;
+
+import me.nelonn.flint.path.Key;
+import me.nelonn.flint.path.Path;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MeshesMapBuilderTest {
+    private static final Key PAPER = Key.of("minecraft:paper");
+    private static final Key STICK = Key.of("minecraft:stick");
+    private static final Path FIRST = Path.of("example:item/first");
+    private static final Path SECOND = Path.of("example:item/second");
+    private static final Path DUPLICATE = Path.of("example:item/duplicate");
+
+    @Test
+    void numbersCanonicalMeshesFromStart() {
+        MeshesMapBuilder builder = new MeshesMapBuilder(10);
+        MeshesMapBuilder.ItemEntry paper = builder.getMapper(PAPER);
+        paper.add(FIRST);
+        paper.add(SECOND);
+        paper.add(FIRST);
+        assertEquals(Integer.valueOf(10), paper.get(FIRST));
+        assertEquals(Integer.valueOf(11), paper.get(SECOND));
+        assertEquals(2, paper.getMap().size());
+        assertSame(paper, builder.getMapper(PAPER));
+    }
+
+    @Test
+    void aliasesShareCustomModelData() {
+        MeshesMapBuilder.ItemEntry paper = new MeshesMapBuilder(1).getMapper(PAPER);
+        paper.add(FIRST);
+        paper.add(DUPLICATE, FIRST);
+        paper.add(SECOND);
+        assertEquals(Integer.valueOf(1), paper.get(DUPLICATE));
+        assertEquals(Integer.valueOf(2), paper.get(SECOND));
+        assertFalse(paper.getMap().containsValue(DUPLICATE));
+        assertEquals(FIRST, paper.getAliases().get(DUPLICATE));
+
+        Map<Path, Integer> meshes = paper.getMeshes();
+        assertEquals(3, meshes.size());
+        assertEquals(Integer.valueOf(1), meshes.get(FIRST));
+        assertEquals(Integer.valueOf(1), meshes.get(DUPLICATE));
+        assertEquals(Integer.valueOf(2), meshes.get(SECOND));
+    }
+
+    // the canonical mesh may only show up as an alias target, it still gets its own number
+    @Test
+    void aliasBeforeCanonical() {
+        MeshesMapBuilder.ItemEntry paper = new MeshesMapBuilder(1).getMapper(PAPER);
+        paper.add(DUPLICATE, FIRST);
+        paper.add(FIRST);
+        assertEquals(paper.get(FIRST), paper.get(DUPLICATE));
+        assertEquals(1, paper.getMap().size());
+    }
+
+    @Test
+    void buildsMappingPerItem() {
+        MeshesMapBuilder builder = new MeshesMapBuilder(1);
+        builder.getMapper(PAPER).add(FIRST);
+        builder.getMapper(PAPER).add(DUPLICATE, FIRST);
+        builder.getMapper(STICK).add(SECOND);
+        builder.getMapper(STICK).add(FIRST);
+        assertEquals(Integer.valueOf(1), builder.build().getCustomModelData(DUPLICATE, PAPER));
+        assertEquals(Integer.valueOf(2), builder.build().getCustomModelData(FIRST, STICK));
+        assertNull(builder.build().getCustomModelData(SECOND, PAPER));
+    }
+}
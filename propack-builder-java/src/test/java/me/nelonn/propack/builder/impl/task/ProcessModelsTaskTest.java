@@ -0,0 +1,217 @@
+/*
+ * This file is part of ProPack, a Minecraft resource pack toolkit
+ * Copyright (C) Michael Neonov <two.nelonn@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.nelonn.propack.builder.impl.task;
+
+import me.nelonn.flint.path.Key;
+import me.nelonn.flint.path.Path;
+import me.nelonn.propack.Resources;
+import me.nelonn.propack.asset.CombinedItemModel;
+import me.nelonn.propack.builder.impl.BuiltResourcePack;
+import me.nelonn.propack.builder.impl.InternalProject;
+import me.nelonn.propack.builder.impl.ProPackCore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProcessModelsTaskTest {
+    private static final Key PAPER = Key.of("minecraft:paper");
+    private static final Path COMBO = Path.of("example:item/combo");
+
+    @TempDir
+    java.nio.file.Path directory;
+
+    private File projectDir() {
+        return directory.resolve("project").toFile();
+    }
+
+    private void write(String path, String content) throws IOException {
+        File file = new File(projectDir(), path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // project with a base mesh and element meshes a, b, c and d that each add their own texture
+    private void createProject(String buildConfig, String constraints) throws IOException {
+        write("project.json5", "{\"FileVersion\": 1, \"Name\": \"example\", \"PackFormat\": 7, \"Icon\": \"pack\","
+                + " \"Description\": {\"Type\": \"Legacy\", \"Text\": \"example\"}}");
+        BufferedImage icon = new BufferedImage(16, 16, BufferedImage.TYPE_INT_ARGB);
+        ImageIO.write(icon, "png", new File(projectDir(), "pack.png"));
+        write("config/build.json5", "{\"Obfuscation\": {}" + buildConfig + "}");
+        write("config/package.json5", "{}");
+        write("config/upload.json5", "{\"Enabled\": false}");
+        write("content/example/item/base.mesh.json", "{\"parent\": \"minecraft:item/generated\","
+                + " \"textures\": {\"layer0\": \":item/base\"}}");
+        StringBuilder elements = new StringBuilder();
+        for (String element : new String[]{"a", "b", "c", "d"}) {
+            write("content/example/item/" + element + ".mesh.json", "{\"textures\": {\"layer\": \":item/" + element + "\"}}");
+            if (elements.length() > 0) {
+                elements.append(", ");
+            }
+            elements.append('"').append(element).append("\": \"./").append(element).append('"');
+        }
+        write("content/example/item/combo.model.json", "{\"Type\": \"CombinedItemModel\", \"Mesh\": \"./base\","
+                + " \"Target\": \"paper\", \"Elements\": {" + elements + "}" + constraints + "}");
+    }
+
+    private BuiltResourcePack build() {
+        ProPackCore core = new ProPackCore(directory.resolve("core").toFile());
+        InternalProject project = core.getProjectLoader().load(new File(projectDir(), "project.json5"), false);
+        project.build();
+        return (BuiltResourcePack) project.getResourcePack();
+    }
+
+    private static Set<String> generatedModels(BuiltResourcePack resourcePack) throws IOException {
+        Set<String> models = new HashSet<>();
+        try (ZipFile zip = new ZipFile(resourcePack.getZip())) {
+            for (ZipEntry entry : Collections.list(zip.entries())) {
+                if (entry.getName().startsWith("assets/example/models/item/combo-")) {
+                    models.add(entry.getName());
+                }
+            }
+        }
+        return models;
+    }
+
+    private static String model(Path mesh) {
+        return "assets/" + mesh.namespace() + "/models/" + mesh.value() + ".json";
+    }
+
+    @Test
+    void generatesEveryCombinationWithoutConstraints() throws IOException {
+        createProject("", "");
+        BuiltResourcePack resourcePack = build();
+        assertNotNull(resourcePack);
+        assertEquals(15, generatedModels(resourcePack).size());
+    }
+
+    @Test
+    void generatesOnlyAllowedCombinations() throws IOException {
+        createProject("", ", \"Constraints\": {\"MaxElements\": 2, \"Exclusive\": [[\"a\", \"b\"]], \"Required\": [\"c\"]}");
+        BuiltResourcePack resourcePack = build();
+        assertNotNull(resourcePack);
+        Resources resources = resourcePack.resources();
+        CombinedItemModel combo = (CombinedItemModel) resources.itemModel(COMBO);
+        assertNotNull(combo);
+        assertEquals(new CombinedItemModel.Constraints(2, Collections.singletonList(new HashSet<>(Arrays.asList("a", "b"))),
+                Collections.singleton("c"), Collections.emptySet()), combo.getConstraints());
+
+        Set<String> expected = new HashSet<>();
+        for (String[] combination : new String[][]{{"c"}, {"a", "c"}, {"b", "c"}, {"c", "d"}}) {
+            Path mesh = combo.getMesh(combination);
+            expected.add(model(mesh));
+            assertNotNull(resources.getMeshes().getCustomModelData(mesh, PAPER), Arrays.toString(combination));
+        }
+        assertEquals(expected, generatedModels(resourcePack));
+        assertThrows(IllegalArgumentException.class, () -> combo.getMesh("a", "b", "c"));
+        assertThrows(IllegalArgumentException.class, () -> combo.getMesh("a", "d"));
+    }
+
+    @Test
+    void generatesOnlyWhitelistedCombinations() throws IOException {
+        createProject("", ", \"Constraints\": {\"Whitelist\": [[\"a\"], [\"b\", \"d\"]]}");
+        BuiltResourcePack resourcePack = build();
+        assertNotNull(resourcePack);
+        CombinedItemModel combo = (CombinedItemModel) resourcePack.resources().itemModel(COMBO);
+        assertNotNull(combo);
+        assertEquals(new HashSet<>(Arrays.asList(model(combo.getMesh("a")), model(combo.getMesh("b", "d")))),
+                generatedModels(resourcePack));
+    }
+
+    @Test
+    void rejectsUnknownConstraintElements() throws IOException {
+        createProject("", ", \"Constraints\": {\"Required\": [\"e\"]}");
+        assertNull(build());
+    }
+
+    @Test
+    void failsOverMeshBudget() throws IOException {
+        createProject(", \"MeshBudget\": 14", "");
+        assertNull(build());
+    }
+
+    @Test
+    void countsBudgetAfterPruning() throws IOException {
+        createProject(", \"MeshBudget\": 4", ", \"Constraints\": {\"MaxElements\": 2, \"Exclusive\": [[\"a\", \"b\"]], \"Required\": [\"c\"]}");
+        BuiltResourcePack resourcePack = build();
+        assertNotNull(resourcePack);
+        assertEquals(4, generatedModels(resourcePack).size());
+    }
+
+    @Test
+    void checksBudgetOfCachedMeshes() throws IOException {
+        createProject("", "");
+        assertNotNull(build());
+        createProject(", \"MeshBudget\": 14", "");
+        assertNull(build());
+    }
+
+    // an element without textures adds nothing, so its combinations duplicate other meshes
+    @Test
+    void aliasesDuplicateMeshes() throws IOException {
+        createProject("", "");
+        write("content/example/item/empty.mesh.json", "{}");
+        write("content/example/item/combo.model.json", "{\"Type\": \"CombinedItemModel\", \"Mesh\": \"./base\","
+                + " \"Target\": \"paper\", \"Elements\": {\"a\": \"./a\", \"x\": \"./empty\"}}");
+        BuiltResourcePack resourcePack = build();
+        assertNotNull(resourcePack);
+        Resources resources = resourcePack.resources();
+        CombinedItemModel combo = (CombinedItemModel) resources.itemModel(COMBO);
+        assertNotNull(combo);
+
+        Integer base = resources.getMeshes().getCustomModelData(Path.of("example:item/base"), PAPER);
+        Integer a = resources.getMeshes().getCustomModelData(combo.getMesh("a"), PAPER);
+        assertNotNull(base);
+        assertNotNull(a);
+        assertNotEquals(base, a);
+        // the authored mesh is preferred over a generated duplicate
+        assertEquals(base, resources.getMeshes().getCustomModelData(combo.getMesh("x"), PAPER));
+        assertEquals(a, resources.getMeshes().getCustomModelData(combo.getMesh("a", "x"), PAPER));
+
+        // of generated duplicates the first in path order keeps its file
+        String first = model(combo.getMesh("a"));
+        String second = model(combo.getMesh("a", "x"));
+        if (first.compareTo(second) > 0) {
+            String swap = first;
+            first = second;
+            second = swap;
+        }
+        assertEquals(Collections.singleton(first), generatedModels(resourcePack));
+        try (ZipFile zip = new ZipFile(resourcePack.getZip())) {
+            assertNotNull(zip.getEntry(model(Path.of("example:item/base"))));
+            assertNull(zip.getEntry(second));
+        }
+
+        // meshes loaded from the cache pick the same canonical meshes
+        BuiltResourcePack rebuilt = build();
+        assertNotNull(rebuilt);
+        assertEquals(Collections.singleton(first), generatedModels(rebuilt));
+        assertEquals(a, rebuilt.resources().getMeshes().getCustomModelData(combo.getMesh("a", "x"), PAPER));
+    }
+}
@@ -20,30 +20,43 @@ package me.nelonn.propack.bukkit.adapter.impl.v1_20_R3;
 
 import com.google.common.collect.Lists;
 import com.mojang.datafixers.util.Pair;
-import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.MessageToMessageCodec;
+import io.netty.channel.ChannelHandler;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMaps;
+import io.papermc.paper.network.ChannelInitializeListenerHolder;
 import me.nelonn.flint.path.Key;
 import me.nelonn.propack.bukkit.adapter.*;
 import net.minecraft.core.Holder;
+import net.minecraft.core.NonNullList;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.nbt.ListTag;
 import net.minecraft.nbt.Tag;
+import net.minecraft.network.Connection;
 import net.minecraft.network.protocol.Packet;
 import net.minecraft.network.protocol.game.*;
+import net.minecraft.network.syncher.EntityDataSerializer;
 import net.minecraft.network.syncher.EntityDataSerializers;
 import net.minecraft.network.syncher.SynchedEntityData;
 import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ChunkMap;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.server.network.ServerCommonPacketListenerImpl;
 import net.minecraft.sounds.SoundEvent;
 import net.minecraft.world.entity.Entity;
 import net.minecraft.world.entity.EntityType;
 import net.minecraft.world.entity.EquipmentSlot;
+import net.minecraft.world.entity.LivingEntity;
 import net.minecraft.world.entity.Marker;
 import net.minecraft.world.item.ItemStack;
+import org.bukkit.craftbukkit.v1_20_R3.entity.CraftEntity;
 import org.bukkit.craftbukkit.v1_20_R3.entity.CraftPlayer;
 import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.function.Consumer;
@@ -91,75 +104,245 @@ public class PaperweightAdapter implements Adapter {
         return ClientboundSoundEntityPacket.class;
     }
 
-    static class PacketInjector extends MessageToMessageCodec<Packet<?>, Packet<?>> {
-        private final Player player;
-        private final IPacketListener listener;
+    private static final net.kyori.adventure.key.Key INJECTOR_KEY = net.kyori.adventure.key.Key.key("propack", "injector");
 
-        public PacketInjector(@NotNull Player player, @NotNull IPacketListener listener) {
-            this.player = player;
-            this.listener = listener;
+    static class NmsPacketInjector extends PacketInjector {
+        NmsPacketInjector(@NotNull IPacketListener listener) {
+            super(listener);
         }
 
         @Override
-        protected void encode(ChannelHandlerContext channelHandlerContext, Packet<?> packet, List<Object> list) {
-            if (listener.onPacketSend(player, packet) instanceof Packet<?> next) {
-                list.add(next);
+        protected boolean isPacket(@NotNull Object msg) {
+            return msg instanceof Packet<?>;
+        }
+
+        @Override
+        protected @Nullable Player resolvePlayer(@NotNull ChannelHandler packetHandler) {
+            // configuration and play listeners know the player, login does not yet
+            if (packetHandler instanceof Connection connection
+                    && connection.getPacketListener() instanceof ServerCommonPacketListenerImpl common) {
+                return common.getCraftPlayer();
             }
+            return null;
         }
 
         @Override
-        protected void decode(ChannelHandlerContext channelHandlerContext, Packet<?> packet, List<Object> list) {
-            if (listener.onPacketReceive(player, packet) instanceof Packet<?> next) {
-                list.add(next);
+        protected @Nullable Iterable<?> subPackets(@NotNull Object packet) {
+            return packet instanceof ClientboundBundlePacket bundle ? bundle.subPackets() : null;
+        }
+
+        @Override
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        protected @NotNull Object bundle(@NotNull List<Object> packets) {
+            return new ClientboundBundlePacket((List) packets);
+        }
+    }
+
+    @Override
+    public void installInjector(@NotNull IPacketListener listener) {
+        ChannelInitializeListenerHolder.addListener(INJECTOR_KEY, channel ->
+                PacketInjector.add(channel, () -> new NmsPacketInjector(listener)));
+        for (Connection connection : getConnections()) {
+            if (connection.channel != null) {
+                PacketInjector.add(connection.channel, () -> new NmsPacketInjector(listener));
             }
         }
     }
 
     @Override
-    public void inject(@NotNull Player player, @NotNull IPacketListener listener) {
-        ((CraftPlayer) player).getHandle().connection.connection.channel.pipeline().addBefore("packet_handler", "propack_injector", new PacketInjector(player, listener));
+    public void uninstallInjector() {
+        if (ChannelInitializeListenerHolder.hasListener(INJECTOR_KEY)) {
+            ChannelInitializeListenerHolder.removeListener(INJECTOR_KEY);
+        }
+        for (Connection connection : getConnections()) {
+            if (connection.channel != null) {
+                PacketInjector.remove(connection.channel);
+            }
+        }
+    }
+
+    private static @NotNull List<Connection> getConnections() {
+        List<Connection> connections = MinecraftServer.getServer().getConnection().getConnections();
+        synchronized (connections) {
+            return new ArrayList<>(connections);
+        }
     }
 
     @Override
     public @NotNull Object patchServerboundSetCreativeModeSlotPacket(@NotNull Object packet, @NotNull Consumer<MItemStack> patcher) {
-        patcher.accept(ItemStackWrapper.of(((ServerboundSetCreativeModeSlotPacket) packet).getItem()));
-        return packet;
+        ServerboundSetCreativeModeSlotPacket nms = (ServerboundSetCreativeModeSlotPacket) packet;
+        if (!isPatchable(nms.getItem())) return packet;
+        ItemStack patched = patch(nms.getItem(), new ItemStackWrapper(), patcher);
+        if (patched == null) return packet;
+        return new ServerboundSetCreativeModeSlotPacket(nms.getSlotNum(), patched);
     }
 
     @Override
     public @NotNull Object patchClientboundContainerSetSlotPacket(@NotNull Object packet, @NotNull Consumer<MItemStack> patcher) {
-        patcher.accept(ItemStackWrapper.of(((ClientboundContainerSetSlotPacket) packet).getItem()));
-        return packet;
+        ClientboundContainerSetSlotPacket nms = (ClientboundContainerSetSlotPacket) packet;
+        if (!isPatchable(nms.getItem())) return packet;
+        ItemStack patched = patch(nms.getItem(), new ItemStackWrapper(), patcher);
+        if (patched == null) return packet;
+        return new ClientboundContainerSetSlotPacket(nms.getContainerId(), nms.getStateId(), nms.getSlot(), patched);
     }
 
     @Override
     public @NotNull Object patchClientboundContainerSetContentPacket(@NotNull Object packet, @NotNull Consumer<MItemStack> patcher) {
         ClientboundContainerSetContentPacket nms = (ClientboundContainerSetContentPacket) packet;
-        for (ItemStack itemStack : nms.getItems()) {
-            patcher.accept(ItemStackWrapper.of(itemStack));
+        List<ItemStack> items = nms.getItems();
+        ItemStackWrapper wrapper = null;
+        NonNullList<ItemStack> patchedItems = null;
+        for (int i = 0; i < items.size(); i++) {
+            ItemStack itemStack = items.get(i);
+            if (!isPatchable(itemStack)) continue;
+            if (wrapper == null) {
+                wrapper = new ItemStackWrapper();
+            }
+            ItemStack patched = patch(itemStack, wrapper, patcher);
+            if (patched == null) continue;
+            if (patchedItems == null) {
+                patchedItems = copyOf(items);
+            }
+            patchedItems.set(i, patched);
+        }
+        ItemStack patchedCarried = null;
+        if (isPatchable(nms.getCarriedItem())) {
+            patchedCarried = patch(nms.getCarriedItem(), wrapper != null ? wrapper : new ItemStackWrapper(), patcher);
         }
-        patcher.accept(ItemStackWrapper.of(nms.getCarriedItem()));
-        return packet;
+        if (patchedItems == null && patchedCarried == null) return packet;
+        if (patchedItems == null) {
+            patchedItems = copyOf(items);
+        }
+        return new ClientboundContainerSetContentPacket(nms.getContainerId(), nms.getStateId(), patchedItems,
+                patchedCarried != null ? patchedCarried : nms.getCarriedItem());
     }
 
     @Override
     public @NotNull Object patchClientboundSetEntityEquipmentPacket(@NotNull Object packet, @NotNull Consumer<MItemStack> patcher) {
         ClientboundSetEquipmentPacket nms = (ClientboundSetEquipmentPacket) packet;
-        for (Pair<EquipmentSlot, ItemStack> slot : nms.getSlots()) {
-            patcher.accept(ItemStackWrapper.of(slot.getSecond()));
+        List<Pair<EquipmentSlot, ItemStack>> slots = nms.getSlots();
+        ItemStackWrapper wrapper = null;
+        List<Pair<EquipmentSlot, ItemStack>> patchedSlots = null;
+        for (int i = 0; i < slots.size(); i++) {
+            Pair<EquipmentSlot, ItemStack> slot = slots.get(i);
+            if (!isPatchable(slot.getSecond())) continue;
+            if (wrapper == null) {
+                wrapper = new ItemStackWrapper();
+            }
+            ItemStack patched = patch(slot.getSecond(), wrapper, patcher);
+            if (patched == null) continue;
+            if (patchedSlots == null) {
+                patchedSlots = new ArrayList<>(slots);
+            }
+            patchedSlots.set(i, Pair.of(slot.getFirst(), patched));
         }
-        return packet;
+        if (patchedSlots == null) return packet;
+        return new ClientboundSetEquipmentPacket(nms.getEntity(), patchedSlots);
     }
 
+    @SuppressWarnings("unchecked")
     @Override
     public @NotNull Object patchClientboundSetEntityDataPacket(@NotNull Object packet, @NotNull Consumer<MItemStack> patcher) {
         ClientboundSetEntityDataPacket nms = (ClientboundSetEntityDataPacket) packet;
         List<SynchedEntityData.DataValue<?>> dataValueList = nms.packedItems();
-        for (SynchedEntityData.DataValue<?> dataValue : dataValueList) {
+        ItemStackWrapper wrapper = null;
+        List<SynchedEntityData.DataValue<?>> patchedList = null;
+        for (int i = 0; i < dataValueList.size(); i++) {
+            SynchedEntityData.DataValue<?> dataValue = dataValueList.get(i);
             if (!dataValue.serializer().equals(EntityDataSerializers.ITEM_STACK)) continue;
-            patcher.accept(ItemStackWrapper.of((ItemStack) dataValue.value()));
+            ItemStack itemStack = (ItemStack) dataValue.value();
+            if (!isPatchable(itemStack)) continue;
+            if (wrapper == null) {
+                wrapper = new ItemStackWrapper();
+            }
+            ItemStack patched = patch(itemStack, wrapper, patcher);
+            if (patched == null) continue;
+            if (patchedList == null) {
+                patchedList = new ArrayList<>(dataValueList);
+            }
+            patchedList.set(i, new SynchedEntityData.DataValue<>(dataValue.id(),
+                    (EntityDataSerializer<ItemStack>) dataValue.serializer(), patched));
         }
-        return packet;
+        if (patchedList == null) return packet;
+        return new ClientboundSetEntityDataPacket(nms.id(), patchedList);
+    }
+
+    private static boolean isPatchable(@Nullable ItemStack itemStack) {
+        return itemStack != null && !itemStack.isEmpty() && itemStack.hasTag();
+    }
+
+    /**
+     * @param wrapper reused between the stacks of one packet
+     * @return patched copy of the stack, null if the patcher did not change it
+     */
+    private static @Nullable ItemStack patch(@NotNull ItemStack itemStack, @NotNull ItemStackWrapper wrapper,
+                                             @NotNull Consumer<MItemStack> patcher) {
+        wrapper.reset(itemStack);
+        patcher.accept(wrapper);
+        return wrapper.isModified() ? wrapper.handle : null;
+    }
+
+    private static @NotNull NonNullList<ItemStack> copyOf(@NotNull List<ItemStack> items) {
+        NonNullList<ItemStack> copy = NonNullList.withSize(items.size(), ItemStack.EMPTY);
+        for (int i = 0; i < items.size(); i++) {
+            copy.set(i, items.get(i));
+        }
+        return copy;
+    }
+
+    @Override
+    public @NotNull List<org.bukkit.entity.Entity> getTrackedEntities(@NotNull Player player) {
+        ServerPlayer serverPlayer = ((CraftPlayer) player).getHandle();
+        ServerLevel level = serverPlayer.serverLevel();
+        List<org.bukkit.entity.Entity> entities = new ArrayList<>();
+        // the tracker already knows who sees what, no range search
+        for (Int2ObjectMap.Entry<ChunkMap.TrackedEntity> entry : Int2ObjectMaps.fastIterable(level.getChunkSource().chunkMap.entityMap)) {
+            if (!entry.getValue().seenBy.contains(serverPlayer.connection)) continue;
+            Entity entity = level.getEntity(entry.getIntKey());
+            if (entity != null) {
+                entities.add(entity.getBukkitEntity());
+            }
+        }
+        return entities;
+    }
+
+    @Override
+    public boolean resendEntityItems(@NotNull Player player, @NotNull org.bukkit.entity.Entity entity) {
+        ServerPlayer serverPlayer = ((CraftPlayer) player).getHandle();
+        Entity handle = ((CraftEntity) entity).getHandle();
+        boolean sent = false;
+        if (handle instanceof LivingEntity livingEntity) {
+            List<Pair<EquipmentSlot, ItemStack>> slots = null;
+            for (EquipmentSlot slot : EquipmentSlot.values()) {
+                ItemStack itemStack = livingEntity.getItemBySlot(slot);
+                if (!isPatchable(itemStack)) continue;
+                if (slots == null) {
+                    slots = new ArrayList<>();
+                }
+                slots.add(Pair.of(slot, itemStack.copy()));
+            }
+            if (slots != null) {
+                serverPlayer.connection.send(new ClientboundSetEquipmentPacket(handle.getId(), slots));
+                sent = true;
+            }
+        }
+        List<SynchedEntityData.DataValue<?>> dataValues = handle.getEntityData().getNonDefaultValues();
+        if (dataValues != null) {
+            List<SynchedEntityData.DataValue<?>> itemValues = null;
+            for (SynchedEntityData.DataValue<?> dataValue : dataValues) {
+                if (!dataValue.serializer().equals(EntityDataSerializers.ITEM_STACK)) continue;
+                if (!isPatchable((ItemStack) dataValue.value())) continue;
+                if (itemValues == null) {
+                    itemValues = new ArrayList<>();
+                }
+                itemValues.add(dataValue);
+            }
+            if (itemValues != null) {
+                serverPlayer.connection.send(new ClientboundSetEntityDataPacket(handle.getId(), itemValues));
+                sent = true;
+            }
+        }
+        return sent;
     }
 
     private SoundEvent recreateSound(SoundEvent original, ResourceLocation name) {
@@ -212,15 +395,25 @@ public class PaperweightAdapter implements Adapter {
         );
     }
 
+    // Reads go to the original stack, the first write copies it so packets shared between viewers stay untouched
     private static class ItemStackWrapper implements MItemStack {
-        public static @Nullable ItemStackWrapper of(final @Nullable ItemStack handle) {
-            return handle == null ? null : new ItemStackWrapper(handle);
+        private ItemStack original;
+        private ItemStack handle;
+
+        public void reset(final @NotNull ItemStack original) {
+            this.original = original;
+            this.handle = original;
         }
 
-        private final ItemStack handle;
+        public boolean isModified() {
+            return handle != original;
+        }
 
-        public ItemStackWrapper(final @NotNull ItemStack handle) {
-            this.handle = handle;
+        private @NotNull ItemStack mutable() {
+            if (handle == original) {
+                handle = original.copy();
+            }
+            return handle;
         }
 
         @Override
@@ -235,14 +428,14 @@ public class PaperweightAdapter implements Adapter {
 
         @Override
         public void setCustomModelData(int customModelData) {
-            handle.getOrCreateTag().putInt("CustomModelData", customModelData);
+            mutable().getOrCreateTag().putInt("CustomModelData", customModelData);
         }
 
         @Override
         public void removeCustomModelData() {
             CompoundTag tag = handle.getTag();
-            if (tag != null) {
-                tag.remove("CustomModelData");
+            if (tag != null && tag.contains("CustomModelData")) {
+                mutable().getOrCreateTag().remove("CustomModelData");
             }
         }
     }
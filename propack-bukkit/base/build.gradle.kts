@@ -27,6 +27,7 @@ dependencies {
     compileOnly(files("../../libs/flint-path-0.0.1.jar"))
 
     compileOnly("io.papermc.paper:paper-api:1.20.4-R0.1-SNAPSHOT")
+    compileOnly("io.netty:netty-transport:4.1.97.Final") // provided by the server
 
     //compileOnly("net.kyori:adventure-api:$adventureVersion")
     //compileOnly("net.kyori:adventure-text-minimessage:$adventureVersion")
@@ -45,6 +46,12 @@ dependencies {
     implementation("org.apache.commons:commons-lang3:3.12.0")
 
     compileOnly("org.jetbrains:annotations:24.1.0")
+
+    testImplementation("org.junit.jupiter:junit-jupiter:5.10.2")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+    testImplementation("io.papermc.paper:paper-api:1.20.4-R0.1-SNAPSHOT")
+    testImplementation("org.slf4j:slf4j-api:2.0.7")
+    testImplementation("org.jetbrains:annotations:24.1.0")
 }
 
 tasks.withType<JavaCompile> {
@@ -57,6 +64,10 @@ tasks {
         dependsOn("clean")
     }
 
+    test {
+        useJUnitPlatform()
+    }
+
     processResources {
         filteringCharset = "UTF-8"
         filesMatching("paper-plugin.yml") {
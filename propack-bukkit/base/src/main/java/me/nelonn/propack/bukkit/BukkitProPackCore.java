@@ -32,6 +32,7 @@ public class BukkitProPackCore extends ProPackCore {
     private final DefinitionTypeMap definitionTypeMap;
     private final PackManager packManager;
     private final ActivePackStoreMap activePackStoreMap;
+    private final MemoryActivePackStore memoryStore;
     private final Dispatcher dispatcher;
     private final ProPackBuilder builder;
 
@@ -40,7 +41,7 @@ public class BukkitProPackCore extends ProPackCore {
         definitionTypeMap = new DefinitionTypeMap();
         packManager = new PackManager(this, plugin.getDataFolder());
         activePackStoreMap = new ActivePackStoreMap();
-        MemoryActivePackStore memoryStore = new MemoryActivePackStore(plugin);
+        memoryStore = new MemoryActivePackStore(plugin);
         activePackStoreMap.register("memory_store", memoryStore);
         dispatcher = new Dispatcher(plugin, memoryStore);
         try {
@@ -63,6 +64,10 @@ public class BukkitProPackCore extends ProPackCore {
         return activePackStoreMap;
     }
 
+    public MemoryActivePackStore getMemoryStore() {
+        return memoryStore;
+    }
+
     public Dispatcher getDispatcher() {
         return dispatcher;
     }
@@ -29,14 +29,25 @@ public final class Config {
     public static final ConfigValue<String> dispatcherPack = new ConfigValue<>("dispatcher.pack");
     public static final ConfigValue<Integer> dispatcherDelay = new ConfigValue<>("dispatcher.delay", 0);
     public static final ConfigValue<Boolean> dispatcherRequired = new ConfigValue<>("dispatcher.required", false);
+    public static final ConfigValue<Integer> dispatcherOffersPerSecond = new ConfigValue<>("dispatcher.offers_per_second", 20);
+    public static final ConfigValue<Integer> dispatcherOfferJitter = new ConfigValue<>("dispatcher.offer_jitter", 0);
     public static final ConfigValue<MiniMessageText> dispatcherPrompt = new ConfigValue<>("dispatcher.prompt", MiniMessageText.DESERIALIZER.deserialize("&#fa4943Accept the pack to enjoy a full experience"), MiniMessageText.DESERIALIZER);
 
+    public static final ConfigValue<Boolean> networkStoreEnabled = new ConfigValue<>("dispatcher.network_store.enabled", false);
+    public static final ConfigValue<String> networkStoreDirectory = new ConfigValue<>("dispatcher.network_store.directory", "network_store");
+    public static final ConfigValue<Integer> networkStoreCacheTtl = new ConfigValue<>("dispatcher.network_store.cache_ttl", 5000);
+    public static final ConfigValue<Integer> networkStoreFlushInterval = new ConfigValue<>("dispatcher.network_store.flush_interval", 250);
+    public static final ConfigValue<Integer> networkStoreHandoffWindow = new ConfigValue<>("dispatcher.network_store.handoff_window", 10000);
+
     public static final ConfigValue<Boolean> devServerEnabled = new ConfigValue<>("dev_server.enabled", false);
     public static final ConfigValue<String> devServerHostIp = new ConfigValue<>("dev_server.host_ip", "127.0.0.1");
     public static final ConfigValue<Integer> devServerPort = new ConfigValue<>("dev_server.port", 3000);
 
+    public static final ConfigValue<String> patchPacketInjector = new ConfigValue<>("patch_packets.injector", "builtin");
     public static final ConfigValue<Boolean> patchPacketItems = new ConfigValue<>("patch_packets.items", true);
     public static final ConfigValue<Boolean> patchPacketSounds = new ConfigValue<>("patch_packets.sounds", true);
+    public static final ConfigValue<Integer> patchPacketResyncPerTick = new ConfigValue<>("patch_packets.resync_per_tick", 64);
+    public static final ConfigValue<Integer> patchPacketLookupCacheSize = new ConfigValue<>("patch_packets.lookup_cache_size", 4096);
     public static final ConfigValue<Boolean> patchPacketDebugMode = new ConfigValue<>("patch_packets.debug_mode", true);
 
     private Config() {
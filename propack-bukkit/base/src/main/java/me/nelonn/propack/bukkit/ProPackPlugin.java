@@ -22,7 +22,12 @@ import me.nelonn.commandlib.bukkit.BukkitCommands;
 import me.nelonn.configlib.PluginConfig;
 import me.nelonn.propack.bukkit.command.ProPackCommand;
 import me.nelonn.propack.bukkit.compatibility.CompatibilitiesManager;
+import me.nelonn.flint.path.Key;
 import me.nelonn.propack.bukkit.dispatcher.ActivePackStore;
+import me.nelonn.propack.bukkit.dispatcher.FileActivePackStore;
+import me.nelonn.propack.bukkit.dispatcher.FileStoreTransport;
+import me.nelonn.propack.bukkit.dispatcher.NetworkActivePackStore;
+import me.nelonn.propack.bukkit.packet.EntityResyncer;
 import me.nelonn.propack.bukkit.packet.ItemPatcher;
 import me.nelonn.propack.bukkit.packet.PacketListener;
 import me.nelonn.propack.core.util.JarResources;
@@ -34,6 +39,7 @@ import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 
 import java.io.File;
+import java.io.IOException;
 
 public final class ProPackPlugin extends JavaPlugin {
     static {
@@ -49,7 +55,11 @@ public final class ProPackPlugin extends JavaPlugin {
     private BukkitAudiences adventure;
     private BukkitProPackCore core;
     private ItemPatcher itemPatcher;
+    private PacketListener packetListener;
+    private EntityResyncer entityResyncer;
     private DevServer devServer;
+    private FileActivePackStore fileStore;
+    private NetworkActivePackStore networkStore;
     private PluginConfig config;
 
     @Override
@@ -82,7 +92,8 @@ public final class ProPackPlugin extends JavaPlugin {
         reloadConfig();
         reloadPacks();
 
-        PacketListener.register(this);
+        packetListener = PacketListener.register(this);
+        entityResyncer = EntityResyncer.register(this);
 
         BukkitCommands.register(this, new ProPackCommand(this));
 
@@ -94,10 +105,22 @@ public final class ProPackPlugin extends JavaPlugin {
     @Override
     public void onDisable() {
         HandlerList.unregisterAll(this);
+        if (packetListener != null) {
+            packetListener.unregister();
+            packetListener = null;
+        }
         CompatibilitiesManager.disableCompatibilities();
         adventure.close();
         adventure = null;
         core.getModuleManager().disableAll();
+        if (networkStore != null) {
+            networkStore.close();
+            networkStore = null;
+        }
+        if (fileStore != null) {
+            fileStore.close();
+            fileStore = null;
+        }
         if (devServer != null) {
             core.getHostingMap().unregister(devServer);
             try {
@@ -112,6 +135,10 @@ public final class ProPackPlugin extends JavaPlugin {
     @Override
     public void reloadConfig() {
         config.load();
+        if (packetListener != null) {
+            packetListener.reload();
+        }
+        core.getProjectLoader().setLookupCacheSize(config.get(Config.patchPacketLookupCacheSize));
         if (devServer != null) {
             core.getHostingMap().unregister(devServer);
             try {
@@ -124,7 +151,37 @@ public final class ProPackPlugin extends JavaPlugin {
             devServer = new DevServer(config.get(Config.devServerHostIp), config.get(Config.devServerPort));
             core.getHostingMap().register("dev_server", devServer);
         }
+        if (networkStore != null) {
+            core.getActivePackStoreMap().unregister("network_store");
+            networkStore.close();
+            networkStore = null;
+        }
+        if (config.get(Config.networkStoreEnabled)) {
+            try {
+                File directory = new File(config.get(Config.networkStoreDirectory));
+                if (!directory.isAbsolute()) {
+                    directory = new File(getDataFolder(), directory.getPath());
+                }
+                networkStore = new NetworkActivePackStore(this, new FileStoreTransport(directory.toPath()), core.getMemoryStore(),
+                        core.getDispatcher()::refreshAppliedResources, config.get(Config.networkStoreCacheTtl),
+                        config.get(Config.networkStoreFlushInterval), config.get(Config.networkStoreHandoffWindow));
+                core.getActivePackStoreMap().register("network_store", networkStore);
+            } catch (IOException e) {
+                LOGGER.error("Unable to create network store", e);
+            }
+        }
         String dispatcherStore = config.get(Config.dispatcherStore);
+        // opened only when selected, kept across reloads so sessions survive
+        boolean fileStoreSelected = Key.withFallback(dispatcherStore, "propack").equals(Key.of("propack", "file_store"));
+        if (fileStore != null && !fileStoreSelected) {
+            core.getActivePackStoreMap().unregister("file_store");
+            fileStore.close();
+            fileStore = null;
+        } else if (fileStore == null && fileStoreSelected) {
+            fileStore = new FileActivePackStore(new File(getDataFolder(), "active_packs.log"));
+            getServer().getPluginManager().registerEvents(fileStore, this);
+            core.getActivePackStoreMap().register("file_store", fileStore);
+        }
         ActivePackStore activePackStore = core.getActivePackStoreMap().get(dispatcherStore);
         if (activePackStore == null) {
             LOGGER.error("Store '{}' not found", dispatcherStore);
@@ -142,6 +199,7 @@ public final class ProPackPlugin extends JavaPlugin {
 
     public void reloadPacks() {
         core.getPackManager().loadAll();
+        core.getDispatcher().refreshAppliedResources();
     }
 
     public @NotNull File getFile() {
@@ -164,6 +222,10 @@ public final class ProPackPlugin extends JavaPlugin {
         return itemPatcher;
     }
 
+    public EntityResyncer getEntityResyncer() {
+        return entityResyncer;
+    }
+
     public BukkitProPackCore getCore() {
         return core;
     }
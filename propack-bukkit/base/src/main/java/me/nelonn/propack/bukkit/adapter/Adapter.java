@@ -18,10 +18,12 @@
 
 package me.nelonn.propack.bukkit.adapter;
 
+import org.bukkit.entity.Entity;
 import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.List;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -43,7 +45,23 @@ public interface Adapter {
 
     @NotNull Class<?> getClientboundSoundEntityPacket();
 
-    void inject(@NotNull Player player, @NotNull IPacketListener packetListener);
+    /**
+     * Adds a {@link PacketInjector} to every new connection at channel init and to the open ones.
+     * The listener gets the packets of a connection from the configuration phase on.
+     */
+    void installInjector(@NotNull IPacketListener packetListener);
+
+    /**
+     * Removes the packet handler from all connections
+     */
+    void uninstallInjector();
+
+    /*
+     * Item patch methods never modify the packet or its stacks, a stack is copied on the first write
+     * and a rebuilt packet is returned. The same packet is returned if the patcher changed nothing.
+     * Empty stacks and stacks without custom data are not passed to the patcher. Packets with several
+     * stacks reuse one MItemStack, so the patcher must not keep a reference to it.
+     */
 
     @NotNull Object patchServerboundSetCreativeModeSlotPacket(@NotNull Object packet, @NotNull Consumer<MItemStack> patcher);
 
@@ -55,6 +73,15 @@ public interface Adapter {
 
     @NotNull Object patchClientboundSetEntityDataPacket(@NotNull Object packet, @NotNull Consumer<MItemStack> patcher);
 
+    // entities whose trackers currently send updates to the player, main thread only
+    @NotNull List<Entity> getTrackedEntities(@NotNull Player player);
+
+    /**
+     * Sends the entity's equipment and item metadata to the player again, only stacks with custom data
+     * @return false if the entity carries no such items
+     */
+    boolean resendEntityItems(@NotNull Player player, @NotNull Entity entity);
+
     @NotNull Object patchClientboundSoundPacket(@NotNull Object packet, @NotNull Function<String, String> patcher);
 
     @NotNull Object patchClientboundSoundEntityPacket(@NotNull Object packet, @NotNull Function<String, String> patcher);
@@ -26,6 +26,9 @@ import org.jetbrains.annotations.Nullable;
 public interface MItemStack {
     @NotNull Key getItemId();
 
+    /**
+     * @return custom data of the item, must be treated as read only
+     */
     @Nullable MCompoundTag getCustomData();
 
     void setCustomModelData(int customModelData);
@@ -0,0 +1,145 @@
+/*
+ * This file is part of ProPack, a Minecraft resource pack toolkit
+ * Copyright (C) Michael Neonov <two.nelonn@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.nelonn.propack.bukkit.adapter;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Packet handler added to every connection at channel init. Version adapters only tell packets
+ * apart and resolve the owner of the connection, the rest is shared.
+ * <p>
+ * Packets pass through until the connection is identified, which happens on the first packet
+ * after login, so configuration-phase packets already go to the listener. After that it works
+ * on the event loop without lookups or allocations for packets the listener leaves unchanged.
+ */
+public abstract class PacketInjector extends ChannelDuplexHandler {
+    public static final String NAME = "propack_injector";
+    private static final String PACKET_HANDLER = "packet_handler";
+
+    private final IPacketListener listener;
+    private volatile Player player;
+
+    protected PacketInjector(@NotNull IPacketListener listener) {
+        this.listener = listener;
+    }
+
+    protected abstract boolean isPacket(@NotNull Object msg);
+
+    // null while the connection is still logging in
+    protected abstract @Nullable Player resolvePlayer(@NotNull ChannelHandler packetHandler);
+
+    // sub packets of a bundle, null for other packets
+    protected abstract @Nullable Iterable<?> subPackets(@NotNull Object packet);
+
+    protected abstract @NotNull Object bundle(@NotNull List<Object> packets);
+
+    private @Nullable Player player(@NotNull ChannelHandlerContext ctx) {
+        Player player = this.player;
+        if (player == null) {
+            ChannelHandler packetHandler = ctx.pipeline().get(PACKET_HANDLER);
+            if (packetHandler != null && (player = resolvePlayer(packetHandler)) != null) {
+                this.player = player;
+            }
+        }
+        return player;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        Player player;
+        if (!isPacket(msg) || (player = player(ctx)) == null) {
+            ctx.write(msg, promise);
+            return;
+        }
+        Iterable<?> subPackets = subPackets(msg);
+        Object next = subPackets != null
+                ? onBundleSend(player, msg, subPackets)
+                : listener.onPacketSend(player, msg);
+        if (next == null) {
+            promise.setSuccess();
+            return;
+        }
+        ctx.write(next, promise);
+    }
+
+    private @NotNull Object onBundleSend(@NotNull Player player, @NotNull Object bundle, @NotNull Iterable<?> subPackets) {
+        List<Object> patched = null;
+        int index = 0;
+        for (Object subPacket : subPackets) {
+            Object next = listener.onPacketSend(player, subPacket);
+            if (patched == null) {
+                if (next == subPacket) {
+                    index++;
+                    continue;
+                }
+                patched = new ArrayList<>();
+                for (Object previous : subPackets) {
+                    if (patched.size() == index) break;
+                    patched.add(previous);
+                }
+            }
+            if (next != null) {
+                patched.add(next);
+            }
+        }
+        return patched == null ? bundle : bundle(patched);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        Player player;
+        if (!isPacket(msg) || (player = player(ctx)) == null) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+        Object next = listener.onPacketReceive(player, msg);
+        if (next != null) {
+            ctx.fireChannelRead(next);
+        }
+    }
+
+    public static void add(@NotNull Channel channel, @NotNull Supplier<PacketInjector> factory) {
+        ChannelPipeline pipeline = channel.pipeline();
+        synchronized (pipeline) {
+            if (pipeline.get(NAME) != null || pipeline.get(PACKET_HANDLER) == null) return;
+            pipeline.addBefore(PACKET_HANDLER, NAME, factory.get());
+        }
+    }
+
+    public static void remove(@NotNull Channel channel) {
+        ChannelPipeline pipeline = channel.pipeline();
+        synchronized (pipeline) {
+            if (pipeline.get(NAME) != null) {
+                pipeline.remove(NAME);
+            }
+        }
+    }
+}
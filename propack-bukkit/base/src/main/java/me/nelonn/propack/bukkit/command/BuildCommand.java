@@ -59,12 +59,13 @@ public class BuildCommand extends Command<CommandSender> {
         new Thread(() -> {
             try {
                 projectPack.build();
+                ProPack.getCore().getDispatcher().refreshAppliedResources();
                 ResourcePack resourcePack = projectPack.getResourcePack$();
                 if (resourcePack.isUploaded()) {
                     for (Player player : Bukkit.getOnlinePlayers()) {
                         ResourcePack playerPack = ProPack.getCore().getDispatcher().getAppliedResourcePack(player);
                         if (playerPack != null && playerPack.getName().equals(resourcePack.getName())) {
-                            ProPack.getCore().getDispatcher().sendOfferAsDefault(player, resourcePack);
+                            ProPack.getCore().getDispatcher().scheduleOfferAsDefault(player, resourcePack.getUpload(), 0L);
                         }
                     }
                 }
@@ -40,6 +40,7 @@ public class HelpCommand extends Command<CommandSender> {
         Util.send(sender, "<white>" + plugin.getDescription().getName() + " <gray>v" + plugin.getDescription().getVersion());
         Util.send(sender, "<gray>/propack build <project>");
         Util.send(sender, "<gray>/propack reload [config|modules|packs]");
+        Util.send(sender, "<gray>/propack stats");
         return true;
     }
 }
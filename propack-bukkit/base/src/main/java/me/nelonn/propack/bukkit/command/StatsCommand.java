@@ -0,0 +1,68 @@
+/*
+ * This file is part of ProPack, a Minecraft resource pack toolkit
+ * Copyright (C) Michael Neonov <two.nelonn@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.nelonn.propack.bukkit.command;
+
+import me.nelonn.commandlib.Command;
+import me.nelonn.commandlib.CommandContext;
+import me.nelonn.propack.CustomModelLookup;
+import me.nelonn.propack.ResourcePack;
+import me.nelonn.propack.bukkit.ProPackPlugin;
+import me.nelonn.propack.bukkit.Util;
+import me.nelonn.propack.bukkit.definition.PackDefinition;
+import me.nelonn.propack.bukkit.dispatcher.OfferScheduler;
+import org.bukkit.command.CommandSender;
+import org.jetbrains.annotations.NotNull;
+
+public class StatsCommand extends Command<CommandSender> {
+    private final ProPackPlugin plugin;
+
+    public StatsCommand(@NotNull ProPackPlugin plugin) {
+        super("stats");
+        requires(s -> s.hasPermission("propack.admin"));
+        this.plugin = plugin;
+    }
+
+    @Override
+    public boolean run(@NotNull CommandContext<CommandSender> commandContext) {
+        CommandSender sender = commandContext.getSource();
+        long size = 0;
+        long hits = 0;
+        long misses = 0;
+        long evictions = 0;
+        for (PackDefinition definition : plugin.getCore().getPackManager().getDefinitions()) {
+            ResourcePack resourcePack = definition.getResourcePack();
+            if (resourcePack == null) continue;
+            CustomModelLookup lookup = resourcePack.resources().getCustomModelLookup();
+            size += lookup.getCacheSize();
+            hits += lookup.getHitCount();
+            misses += lookup.getMissCount();
+            evictions += lookup.getEvictionCount();
+        }
+        Util.send(sender, "<white>Custom model lookup cache");
+        Util.send(sender, "<gray>Size: <white>" + size + " <gray>Evictions: <white>" + evictions);
+        Util.send(sender, "<gray>Hits: <white>" + hits + " <gray>Misses: <white>" + misses
+                + " <gray>Hit rate: <white>" + String.format("%.1f%%", hits + misses == 0 ? 0.0D : hits * 100.0D / (hits + misses)));
+        OfferScheduler.Stats offers = plugin.getCore().getDispatcher().getOfferScheduler().getStats();
+        Util.send(sender, "<white>Pack offers");
+        Util.send(sender, "<gray>Queued: <white>" + offers.queued() + " <gray>Oldest: <white>" + offers.oldestWait() + "ms");
+        Util.send(sender, "<gray>Sent: <white>" + offers.sent() + " <gray>Latency: <white>" + offers.lastLatency()
+                + "ms <gray>Average: <white>" + offers.averageLatency() + "ms <gray>Max: <white>" + offers.maxLatency() + "ms");
+        return true;
+    }
+}
@@ -137,7 +137,7 @@ public class ProjectPack implements PackDefinition {
         if (!builtResourcePack.exists()) {
             throw new IllegalStateException("ProPack file not found, is the resource pack really built?");
         }
-        ProPackFileLoader proPackFileLoader = new ProPackFileLoader();
+        ProPackFileLoader proPackFileLoader = new ProPackFileLoader(projectLoader.getLookupCacheSize());
         Resources resources = proPackFileLoader.load(builtResourcePack);
         BuiltResourcePack builtResourcePack1 = (BuiltResourcePack) project.getResourcePack();
         resourcePack = new SimpleResourcePack(project.name, resources, builtResourcePack, builtResourcePack1.getSha1(), builtResourcePack1.getUpload());
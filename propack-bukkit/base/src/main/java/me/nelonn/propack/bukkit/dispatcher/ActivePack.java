@@ -21,6 +21,8 @@ package me.nelonn.propack.bukkit.dispatcher;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Objects;
+
 public class ActivePack {
     public final String name;
     public final @Nullable String sha1;
@@ -29,4 +31,16 @@ public class ActivePack {
         this.name = name;
         this.sha1 = sha1;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ActivePack that)) return false;
+        return name.equals(that.name) && Objects.equals(sha1, that.sha1);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, sha1);
+    }
 }
@@ -29,4 +29,12 @@ public interface ActivePackStore {
 
     void setActiveResourcePack(@NotNull UUID playerID, @Nullable ActivePack activePack);
 
+    /**
+     * Pack the player loaded in an earlier session. Clients drop server packs on disconnect
+     * but keep downloads cached, so offering this pack again costs no download.
+     */
+    default @Nullable ActivePack getCachedResourcePack(@NotNull UUID playerID) {
+        return null;
+    }
+
 }
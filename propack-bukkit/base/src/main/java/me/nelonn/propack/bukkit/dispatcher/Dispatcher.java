@@ -19,6 +19,7 @@
 package me.nelonn.propack.bukkit.dispatcher;
 
 import me.nelonn.propack.ResourcePack;
+import me.nelonn.propack.Resources;
 import me.nelonn.propack.UploadedPack;
 import me.nelonn.propack.bukkit.Config;
 import me.nelonn.propack.bukkit.ProPack;
@@ -31,6 +32,7 @@ import net.kyori.adventure.text.minimessage.tag.resolver.Placeholder;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
@@ -40,34 +42,45 @@ import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Dispatcher implements Listener {
     private static final Logger LOGGER = LogManagerCompat.getLogger();
     private final ProPackPlugin plugin;
     private final PackSender packSender;
-    private final Map<UUID, ActivePack> pending = new HashMap<>();
+    private final OfferScheduler offerScheduler;
+    private final Map<UUID, PlayerPackState> states = new ConcurrentHashMap<>();
     private final ActivePackStore fallbackActivePackStore;
-    private ActivePackStore activePackStore;
+    private volatile ActivePackStore activePackStore;
 
     public Dispatcher(@NotNull ProPackPlugin plugin, @NotNull MemoryActivePackStore memoryStore) {
         this.plugin = plugin;
         packSender = Objects.requireNonNull(PaperPackSender.INSTANCE, "INSTALL PAPER PLEASE!!!");
         Bukkit.getPluginManager().registerEvents(this, plugin);
+        offerScheduler = new OfferScheduler(plugin, this);
+        Bukkit.getScheduler().runTaskTimer(plugin, offerScheduler, 1L, 1L);
         fallbackActivePackStore = memoryStore;
         activePackStore = fallbackActivePackStore;
     }
 
+    public @NotNull OfferScheduler getOfferScheduler() {
+        return offerScheduler;
+    }
+
     public @NotNull ActivePackStore getStore() {
         return activePackStore;
     }
 
     public void setStore(@Nullable ActivePackStore activePackStore) {
         this.activePackStore = activePackStore != null ? activePackStore : fallbackActivePackStore;
+        refreshAppliedResources();
     }
 
     public void sendOffer(@NotNull Player player, @NotNull ResourcePackOffer packOffer) {
+        PlayerPackState state = states.get(player.getUniqueId());
+        if (state == null) return; // not joined or already left
         packSender.send(player, packOffer);
-        pending.put(player.getUniqueId(), new ActivePack(packOffer.getUpload().getName(), packOffer.getUpload().getSha1String()));
+        state.offer(new ActivePack(packOffer.getUpload().getName(), packOffer.getUpload().getSha1String()));
     }
 
     /**
@@ -95,6 +108,32 @@ public class Dispatcher implements Listener {
         sendOfferAsDefault(player, resourcePack.getUpload());
     }
 
+    /**
+     * Same as {@link #sendOfferAsDefault(Player, UploadedPack)} but rate limited by {@link OfferScheduler}
+     * @param delayMillis minimal delay before sending
+     */
+    public void scheduleOfferAsDefault(@NotNull Player player, @NotNull UploadedPack uploadedPack, long delayMillis) {
+        PlayerPackState state = states.get(player.getUniqueId());
+        if (state == null) return;
+        int priority;
+        if (isSame(activePackStore.getCachedResourcePack(player.getUniqueId()), uploadedPack)) {
+            priority = OfferScheduler.PRIORITY_CACHED;
+        } else {
+            priority = state.get().active() == null ? OfferScheduler.PRIORITY_NO_PACK : OfferScheduler.PRIORITY_REPLACE;
+        }
+        offerScheduler.schedule(player, uploadedPack, priority, delayMillis);
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    private void onJoinFirst(PlayerJoinEvent event) {
+        states.computeIfAbsent(event.getPlayer().getUniqueId(), playerID -> {
+            PlayerPackState state = new PlayerPackState(playerID);
+            ActivePack active = activePackStore.getActiveResourcePack(playerID);
+            state.activate(active, resolveResources(active));
+            return state;
+        });
+    }
+
     @EventHandler
     private void onJoin(PlayerJoinEvent event) {
         if (!plugin.config().get(Config.dispatcherEnabled)) return;
@@ -111,7 +150,12 @@ public class Dispatcher implements Listener {
         }
         Player player = event.getPlayer();
         if (plugin.config().get(Config.itemsAdderCompat) && Bukkit.getServer().getPluginManager().isPluginEnabled("ItemsAdder")) {
-            activePackStore.setActiveResourcePack(player.getUniqueId(), new ActivePack(resourcePack.getName(), null));
+            ActivePack pack = new ActivePack(resourcePack.getName(), null);
+            activePackStore.setActiveResourcePack(player.getUniqueId(), pack);
+            PlayerPackState state = states.get(player.getUniqueId());
+            if (state != null) {
+                state.activate(pack, resolveResources(pack));
+            }
             return;
         }
         if (!resourcePack.isUploaded()) {
@@ -122,49 +166,100 @@ public class Dispatcher implements Listener {
         ActivePack active = activePackStore.getActiveResourcePack(player.getUniqueId());
         if (active != null) {
             if (plugin.config().get(Config.dispatcherReplace)) {
-                if (active.name.equals(resourcePack.getName()) && active.sha1 != null && active.sha1.equals(uploadedPack.getSha1String())) return;
+                if (isSame(active, uploadedPack)) return;
             } else return;
         }
-        int delay = plugin.config().get(Config.dispatcherDelay);
-        if (delay > 0) {
-            Bukkit.getScheduler().runTaskLater(plugin, () -> sendOfferAsDefault(player, uploadedPack), delay * 20L);
-        } else {
-            sendOfferAsDefault(player, uploadedPack);
-        }
+        scheduleOfferAsDefault(player, uploadedPack, plugin.config().get(Config.dispatcherDelay) * 1000L);
+    }
+
+    private static boolean isSame(@Nullable ActivePack activePack, @NotNull UploadedPack uploadedPack) {
+        return activePack != null && activePack.name.equals(uploadedPack.getName())
+                && activePack.sha1 != null && activePack.sha1.equals(uploadedPack.getSha1String());
     }
 
     @EventHandler
     private void onQuit(PlayerQuitEvent event) {
-        pending.remove(event.getPlayer().getUniqueId());
+        offerScheduler.cancel(event.getPlayer().getUniqueId());
+        PlayerPackState state = states.remove(event.getPlayer().getUniqueId());
+        if (state != null) {
+            state.clear();
+        }
     }
 
     @EventHandler
     private void onStatus(PlayerResourcePackStatusEvent event) {
         if (event.getStatus() == PlayerResourcePackStatusEvent.Status.SUCCESSFULLY_LOADED) {
             Player player = event.getPlayer();
-            ActivePack pack = pending.remove(player.getUniqueId());
+            PlayerPackState state = states.get(player.getUniqueId());
+            if (state == null) return;
+            ActivePack pack = state.takePending();
             if (pack == null) return;
             activePackStore.setActiveResourcePack(player.getUniqueId(), pack);
+            state.activate(pack, resolveResources(pack));
             if (plugin.config().get(Config.patchPacketItems)) {
                 player.updateInventory();
-                // TODO: resend entities
+                plugin.getEntityResyncer().schedule(player);
             }
         }
     }
 
     public @Nullable ActivePack getPendingResourcePack(@NotNull Player player) {
-        return pending.get(player.getUniqueId());
+        PlayerPackState state = states.get(player.getUniqueId());
+        return state != null ? state.get().pending() : null;
     }
 
-    public @Nullable ResourcePack getAppliedResourcePack(@NotNull Player player) {
-        return getAppliedResourcePack(player.getUniqueId());
+    /**
+     * Pack state of a joined player, safe to read from any thread. Created on join and dropped on quit,
+     * null outside of that. Resolved resources are updated on pack status, store change and pack reload.
+     */
+    public @Nullable PlayerPackState getState(@NotNull Player player) {
+        return states.get(player.getUniqueId());
     }
 
-    public @Nullable ResourcePack getAppliedResourcePack(@NotNull UUID playerID) {
-        ActivePack activePack = activePackStore.getActiveResourcePack(playerID);
+    public @Nullable PlayerPackState getStateIfPresent(@NotNull UUID playerID) {
+        return states.get(playerID);
+    }
+
+    /**
+     * Must be called after the active pack store or the pack definitions were changed directly
+     */
+    public void refreshAppliedResources() {
+        for (PlayerPackState state : states.values()) {
+            refresh(state);
+        }
+    }
+
+    public void refreshAppliedResources(@NotNull UUID playerID) {
+        PlayerPackState state = states.get(playerID);
+        if (state != null) {
+            refresh(state);
+        }
+    }
+
+    private void refresh(@NotNull PlayerPackState state) {
+        int version = state.get().version();
+        ActivePack active = activePackStore.getActiveResourcePack(state.getPlayerID());
+        // a status event activating a pack meanwhile wins over this read
+        state.refresh(version, active, resolveResources(active));
+    }
+
+    private @Nullable Resources resolveResources(@Nullable ActivePack activePack) {
+        ResourcePack resourcePack = resolveResourcePack(activePack);
+        return resourcePack != null ? resourcePack.resources() : null;
+    }
+
+    private @Nullable ResourcePack resolveResourcePack(@Nullable ActivePack activePack) {
         if (activePack == null) return null;
         PackDefinition definition = plugin.getCore().getPackManager().getDefinition(activePack.name);
         if (definition == null) return null;
         return definition.getResourcePack();
     }
+
+    public @Nullable ResourcePack getAppliedResourcePack(@NotNull Player player) {
+        return getAppliedResourcePack(player.getUniqueId());
+    }
+
+    public @Nullable ResourcePack getAppliedResourcePack(@NotNull UUID playerID) {
+        return resolveResourcePack(activePackStore.getActiveResourcePack(playerID));
+    }
 }
@@ -0,0 +1,265 @@
+/*
+ * This file is part of ProPack, a Minecraft resource pack toolkit
+ * Copyright (C) Michael Neonov <two.nelonn@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.nelonn.propack.bukkit.dispatcher;
+
+import me.nelonn.propack.core.util.LogManagerCompat;
+import me.nelonn.propack.core.util.NamedThreadFactory;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers the last pack each player loaded across restarts in an append-only log.
+ * Clients drop server packs on disconnect, so the active pack itself only lives until the player quits.
+ * The remembered pack is kept for the most recent players only and tells which pack is likely still
+ * in the client's download cache. Reads never touch the disk and writes are appended by a background thread.
+ * The log is rewritten from memory when it grows well past the live entries.
+ */
+public class FileActivePackStore implements ActivePackStore, Listener, Closeable {
+    private static final Logger LOGGER = LogManagerCompat.getLogger();
+    private static final int MAGIC = 0x50504153; // PPAS
+    private static final int VERSION = 1;
+    private static final int COMPACT_MIN_RECORDS = 1024;
+    public static final int DEFAULT_MAX_ENTRIES = 65536;
+
+    private final File file;
+    private final Map<UUID, ActivePack> session = new ConcurrentHashMap<>();
+    private final Map<UUID, ActivePack> lastLoaded; // guarded by itself, least recently used first
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(new NamedThreadFactory(r -> "propack-store-writer"));
+    // set up by the constructor, then writer thread only, null while the log is not writable
+    private DataOutputStream out;
+    private int records;
+
+    public FileActivePackStore(@NotNull File file) {
+        this(file, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Does not listen to quits by itself, register it or call {@link #forget(UUID)}
+     * @param maxEntries players whose last pack is remembered
+     */
+    public FileActivePackStore(@NotNull File file, int maxEntries) {
+        this.file = file;
+        this.lastLoaded = new LinkedHashMap<>(16, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, ActivePack> eldest) {
+                return size() > Math.max(1, maxEntries);
+            }
+        };
+        boolean writable = true;
+        try {
+            load();
+        } catch (IOException e) {
+            // records read before the damage are kept, the rest stays in the backup
+            File backup = new File(file.getPath() + ".corrupt");
+            LOGGER.error("Active packs log '{}' is damaged, recovered {} players, moving it to '{}'", file, lastLoaded.size(), backup, e);
+            try {
+                Files.move(file.toPath(), backup.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e1) {
+                LOGGER.error("Unable to back up '{}', active packs will not be saved", file, e1);
+                writable = false;
+            }
+        }
+        if (writable) {
+            // before any record is queued, so the log never repeats what the rewrite already holds
+            try {
+                compact();
+            } catch (IOException e) {
+                LOGGER.error("Something went wrong when writing active packs to '{}'", file, e);
+            }
+        }
+    }
+
+    @Override
+    public @Nullable ActivePack getActiveResourcePack(@NotNull UUID playerID) {
+        return session.get(playerID);
+    }
+
+    @Override
+    public @Nullable ActivePack getCachedResourcePack(@NotNull UUID playerID) {
+        synchronized (lastLoaded) {
+            return lastLoaded.get(playerID);
+        }
+    }
+
+    @Override
+    public void setActiveResourcePack(@NotNull UUID playerID, @Nullable ActivePack activePack) {
+        if (activePack == null) {
+            // unloading does not clear the client's download cache
+            session.remove(playerID);
+            return;
+        }
+        session.put(playerID, activePack);
+        ActivePack previous;
+        synchronized (lastLoaded) {
+            previous = lastLoaded.put(playerID, activePack);
+        }
+        if (activePack.equals(previous)) return;
+        byte[] record = encode(playerID, activePack);
+        writer.execute(() -> {
+            try {
+                if (out == null) return;
+                out.write(record);
+                out.flush();
+                if (++records >= COMPACT_MIN_RECORDS && records > size() * 2) {
+                    compact();
+                }
+            } catch (IOException e) {
+                LOGGER.error("Something went wrong when writing active packs to '{}'", file, e);
+            }
+        });
+    }
+
+    /**
+     * Ends the player's session, the last loaded pack is still remembered
+     */
+    public void forget(@NotNull UUID playerID) {
+        session.remove(playerID);
+    }
+
+    @EventHandler
+    public void onQuit(PlayerQuitEvent event) {
+        forget(event.getPlayer().getUniqueId());
+    }
+
+    public int size() {
+        synchronized (lastLoaded) {
+            return lastLoaded.size();
+        }
+    }
+
+    /**
+     * Writes pending records and closes the log
+     */
+    @Override
+    public void close() {
+        HandlerList.unregisterAll(this);
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(10, TimeUnit.SECONDS)) {
+                LOGGER.warn("Active packs writer did not finish in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException ignored) {
+            }
+            out = null;
+        }
+    }
+
+    private void load() throws IOException {
+        if (!file.exists()) return;
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (bytes.length < 8 || in.readInt() != MAGIC) {
+            throw new IOException("Not an active packs log");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported active packs log version " + version);
+        }
+        while (in.available() > 0) {
+            UUID playerID;
+            ActivePack activePack;
+            try {
+                playerID = new UUID(in.readLong(), in.readLong());
+                activePack = in.readBoolean() ? new ActivePack(in.readUTF(), in.readBoolean() ? in.readUTF() : null) : null;
+            } catch (EOFException e) {
+                LOGGER.warn("Active packs log '{}' ends with a partial record, it will be dropped", file);
+                break;
+            }
+            synchronized (lastLoaded) {
+                if (activePack != null) {
+                    lastLoaded.put(playerID, activePack);
+                } else {
+                    lastLoaded.remove(playerID);
+                }
+            }
+        }
+    }
+
+    // Rewrites the log from memory, replaces the old one atomically
+    private void compact() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Failed to create directory '" + parent + "'");
+        }
+        List<Map.Entry<UUID, ActivePack>> entries;
+        synchronized (lastLoaded) {
+            entries = new ArrayList<>(lastLoaded.entrySet());
+        }
+        File temp = new File(parent, file.getName() + ".tmp");
+        try (DataOutputStream tempOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            tempOut.writeInt(MAGIC);
+            tempOut.writeInt(VERSION);
+            // oldest first, replay restores the recency order
+            for (Map.Entry<UUID, ActivePack> entry : entries) {
+                tempOut.write(encode(entry.getKey(), entry.getValue()));
+            }
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+        records = entries.size();
+    }
+
+    private static byte[] encode(@NotNull UUID playerID, @Nullable ActivePack activePack) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream data = new DataOutputStream(bytes);
+            data.writeLong(playerID.getMostSignificantBits());
+            data.writeLong(playerID.getLeastSignificantBits());
+            data.writeBoolean(activePack != null);
+            if (activePack != null) {
+                data.writeUTF(activePack.name);
+                data.writeBoolean(activePack.sha1 != null);
+                if (activePack.sha1 != null) {
+                    data.writeUTF(activePack.sha1);
+                }
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
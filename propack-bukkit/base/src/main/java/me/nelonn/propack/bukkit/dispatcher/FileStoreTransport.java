@@ -0,0 +1,85 @@
+/*
+ * This file is part of ProPack, a Minecraft resource pack toolkit
+ * Copyright (C) Michael Neonov <two.nelonn@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.nelonn.propack.bukkit.dispatcher;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Reference transport over a directory that all servers can reach, one small file per player.
+ * Files are replaced atomically, so readers never see a partial write.
+ */
+public class FileStoreTransport implements StoreTransport {
+    private final Path directory;
+
+    public FileStoreTransport(@NotNull Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+    }
+
+    @Override
+    public @Nullable Entry fetch(@NotNull UUID playerID) throws IOException {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file(playerID), StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        if (lines.isEmpty() || lines.get(0).isEmpty()) return null;
+        String sha1 = lines.size() > 1 && !lines.get(1).isEmpty() ? lines.get(1) : null;
+        long leftAt;
+        try {
+            leftAt = lines.size() > 2 && !lines.get(2).isEmpty() ? Long.parseLong(lines.get(2)) : 0L;
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed entry of " + playerID, e);
+        }
+        return new Entry(new ActivePack(lines.get(0), sha1), leftAt);
+    }
+
+    @Override
+    public void push(@NotNull Map<UUID, Entry> changes) throws IOException {
+        for (Map.Entry<UUID, Entry> entry : changes.entrySet()) {
+            Path file = file(entry.getKey());
+            Entry value = entry.getValue();
+            if (value == null) {
+                Files.deleteIfExists(file);
+                continue;
+            }
+            Path temp = directory.resolve(entry.getKey() + "." + ProcessHandle.current().pid() + ".tmp");
+            ActivePack activePack = value.pack();
+            String content = activePack.name + '\n' + (activePack.sha1 != null ? activePack.sha1 : "") + '\n' + value.leftAt() + '\n';
+            Files.write(temp, content.getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    private @NotNull Path file(@NotNull UUID playerID) {
+        return directory.resolve(playerID + ".pack");
+    }
+}
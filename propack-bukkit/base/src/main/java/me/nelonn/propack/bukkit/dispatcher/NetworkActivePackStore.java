@@ -0,0 +1,254 @@
+/*
+ * This file is part of ProPack, a Minecraft resource pack toolkit
+ * Copyright (C) Michael Neonov <two.nelonn@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.nelonn.propack.bukkit.dispatcher;
+
+import me.nelonn.propack.core.util.LogManagerCompat;
+import me.nelonn.propack.core.util.NamedThreadFactory;
+import org.bukkit.Bukkit;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Active packs shared between the servers of a network through a {@link StoreTransport}.
+ * Reads only look at a local cache and never wait for the transport. Players are fetched on pre-login,
+ * expired entries are fetched again in the background and changes are reported to a listener.
+ * Writes are batched in the background. Every write also goes to the fallback store,
+ * which answers reads while a player is not cached.
+ * <p>
+ * Clients drop server packs when they disconnect, but keep them when a proxy moves them to another server.
+ * So servers mark the entry when the player leaves. A fetched pack is trusted on pre-login only if the
+ * player is still connected elsewhere or left less than the handoff window ago.
+ */
+public class NetworkActivePackStore implements ActivePackStore, Listener, Closeable {
+    private static final Logger LOGGER = LogManagerCompat.getLogger();
+    private final StoreTransport transport;
+    private final ActivePackStore fallback;
+    private final Consumer<UUID> changeListener;
+    private final long cacheTtlNanos;
+    private final long handoffWindow;
+    private final Map<UUID, Cached> cache = new ConcurrentHashMap<>();
+    private final Set<UUID> refreshing = ConcurrentHashMap.newKeySet();
+    private final Map<UUID, StoreTransport.Entry> pending = new HashMap<>(); // guarded by itself, null values clear
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory(r -> "propack-network-store"));
+    private volatile boolean failing;
+
+    /**
+     * @param changeListener called from the store thread when a background fetch changed the pack of a player
+     * @param cacheTtl millis a fetched value is trusted
+     * @param flushInterval millis between batched writes
+     * @param handoffWindow millis after leaving another server during which its pack is still trusted
+     */
+    public NetworkActivePackStore(@NotNull Plugin plugin, @NotNull StoreTransport transport, @NotNull ActivePackStore fallback,
+                                  @NotNull Consumer<UUID> changeListener, long cacheTtl, long flushInterval, long handoffWindow) {
+        this.transport = transport;
+        this.fallback = fallback;
+        this.changeListener = changeListener;
+        this.cacheTtlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, cacheTtl));
+        this.handoffWindow = Math.max(0L, handoffWindow);
+        executor.scheduleWithFixedDelay(this::flush, flushInterval, Math.max(1L, flushInterval), TimeUnit.MILLISECONDS);
+        Bukkit.getPluginManager().registerEvents(this, plugin);
+    }
+
+    @Override
+    public @Nullable ActivePack getActiveResourcePack(@NotNull UUID playerID) {
+        Cached cached = cache.get(playerID);
+        if (cached == null) {
+            refreshAsync(playerID);
+            return fallback.getActiveResourcePack(playerID);
+        }
+        if (cached.expiresAt - System.nanoTime() <= 0L) {
+            // the old value answers until the fetch is done
+            refreshAsync(playerID);
+        }
+        return cached.value;
+    }
+
+    @Override
+    public void setActiveResourcePack(@NotNull UUID playerID, @Nullable ActivePack activePack) {
+        fallback.setActiveResourcePack(playerID, activePack);
+        // under the same lock as the refresh check, so a fetched value cannot overwrite this one
+        synchronized (pending) {
+            cache.put(playerID, new Cached(activePack, System.nanoTime() + cacheTtlNanos));
+            pending.put(playerID, activePack != null ? new StoreTransport.Entry(activePack, 0L) : null);
+        }
+    }
+
+    // already off the main thread, join handling finds the player cached
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) return;
+        UUID playerID = event.getUniqueId();
+        StoreTransport.Entry entry;
+        try {
+            entry = transport.fetch(playerID);
+            recovered();
+        } catch (IOException | RuntimeException e) {
+            failed(e);
+            cache.remove(playerID);
+            return;
+        }
+        ActivePack activePack = null;
+        if (entry != null && (entry.leftAt() == 0L || System.currentTimeMillis() - entry.leftAt() <= handoffWindow)) {
+            activePack = entry.pack();
+        }
+        cache.put(playerID, new Cached(activePack, System.nanoTime() + cacheTtlNanos));
+    }
+
+    @EventHandler
+    public void onQuit(PlayerQuitEvent event) {
+        UUID playerID = event.getPlayer().getUniqueId();
+        Cached cached = cache.remove(playerID);
+        if (cached == null || cached.value == null) return;
+        synchronized (pending) {
+            pending.put(playerID, new StoreTransport.Entry(cached.value, System.currentTimeMillis()));
+        }
+    }
+
+    private void refreshAsync(@NotNull UUID playerID) {
+        if (!refreshing.add(playerID)) return;
+        try {
+            executor.execute(() -> {
+                try {
+                    refresh(playerID);
+                } finally {
+                    refreshing.remove(playerID);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(playerID); // closed
+        }
+    }
+
+    private void refresh(@NotNull UUID playerID) {
+        long fetchStart = System.nanoTime();
+        StoreTransport.Entry entry;
+        try {
+            entry = transport.fetch(playerID);
+            recovered();
+        } catch (IOException | RuntimeException e) {
+            failed(e);
+            // keeps the old value for another ttl instead of retrying on every read
+            cache.computeIfPresent(playerID, (key, cached) -> new Cached(cached.value, System.nanoTime() + cacheTtlNanos));
+            return;
+        }
+        // left meanwhile, nothing to cache
+        if (Bukkit.getPlayer(playerID) == null) return;
+        // the player is here, so a leave mark comes from the server it switched from
+        ActivePack activePack = entry != null ? entry.pack() : null;
+        Cached previous;
+        synchronized (pending) {
+            // not written yet, the remote value is older
+            if (pending.containsKey(playerID)) return;
+            previous = cache.get(playerID);
+            // set after the fetch started, the write may still be in flight
+            if (previous != null && previous.expiresAt - cacheTtlNanos - fetchStart > 0L) return;
+            cache.put(playerID, new Cached(activePack, System.nanoTime() + cacheTtlNanos));
+        }
+        ActivePack previousPack = previous != null ? previous.value : fallback.getActiveResourcePack(playerID);
+        if (!Objects.equals(previousPack, activePack)) {
+            changeListener.accept(playerID);
+        }
+    }
+
+    private void flush() {
+        Map<UUID, StoreTransport.Entry> batch;
+        synchronized (pending) {
+            if (pending.isEmpty()) return;
+            batch = new HashMap<>(pending);
+            pending.clear();
+        }
+        try {
+            transport.push(batch);
+            recovered();
+        } catch (IOException | RuntimeException e) {
+            failed(e);
+            synchronized (pending) {
+                // retried with the next batch unless changed meanwhile
+                for (Map.Entry<UUID, StoreTransport.Entry> entry : batch.entrySet()) {
+                    if (!pending.containsKey(entry.getKey())) {
+                        pending.put(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+        }
+    }
+
+    private void failed(@NotNull Exception e) {
+        if (!failing) {
+            failing = true;
+            LOGGER.warn("Network store transport failed, using fallback store until it recovers", e);
+        }
+    }
+
+    private void recovered() {
+        if (failing) {
+            failing = false;
+            LOGGER.info("Network store transport recovered");
+        }
+    }
+
+    public boolean isFailing() {
+        return failing;
+    }
+
+    /**
+     * Writes pending changes and closes the transport
+     */
+    @Override
+    public void close() {
+        HandlerList.unregisterAll(this);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        try {
+            transport.close();
+        } catch (IOException e) {
+            LOGGER.error("Something went wrong when closing network store transport", e);
+        }
+    }
+
+    private record Cached(@Nullable ActivePack value, long expiresAt) {
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * This file is part of ProPack, a Minecraft resource pack toolkit
+ * Copyright (C) Michael Neonov <two.nelonn@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.nelonn.propack.bukkit.dispatcher;
+
+import me.nelonn.propack.UploadedPack;
+import me.nelonn.propack.bukkit.Config;
+import me.nelonn.propack.bukkit.ProPackPlugin;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Spreads default pack offers over time, so a restart or a rebuild does not make every player
+ * download the pack in the same tick. Players without an active pack are served first.
+ */
+public class OfferScheduler implements Runnable {
+    // the client has the pack in its download cache, not rate limited
+    public static final int PRIORITY_CACHED = -1;
+    public static final int PRIORITY_NO_PACK = 0;
+    public static final int PRIORITY_REPLACE = 1;
+
+    private final ProPackPlugin plugin;
+    private final Dispatcher dispatcher;
+    // waiting for their delay and jitter, by time
+    private final PriorityQueue<QueuedOffer> delayed = new PriorityQueue<>(Comparator.comparingLong(QueuedOffer::notBefore));
+    // ready to be sent, by priority then by queue order
+    private final PriorityQueue<QueuedOffer> ready = new PriorityQueue<>(Comparator.comparingInt(QueuedOffer::priority).thenComparingLong(QueuedOffer::sequence));
+    private final Map<UUID, QueuedOffer> byPlayer = new HashMap<>();
+    private long sequence;
+    private double tokens;
+    private long sent;
+    private long lastLatency;
+    private long maxLatency;
+    private double averageLatency;
+
+    public OfferScheduler(@NotNull ProPackPlugin plugin, @NotNull Dispatcher dispatcher) {
+        this.plugin = plugin;
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * Queues an offer made with the dispatcher configuration, replaces the queued offer of the player if any
+     * @param priority lower is sent first, see {@link #PRIORITY_NO_PACK}
+     * @param delayMillis minimal delay before the offer is sent, jitter is added on top
+     */
+    public synchronized void schedule(@NotNull Player player, @NotNull UploadedPack uploadedPack, int priority, long delayMillis) {
+        long now = System.currentTimeMillis();
+        long jitter = plugin.config().get(Config.dispatcherOfferJitter);
+        long notBefore = now + Math.max(0L, delayMillis) + (jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter + 1) : 0L);
+        cancel(player.getUniqueId());
+        QueuedOffer offer = new QueuedOffer(player.getUniqueId(), uploadedPack, priority, now, notBefore, sequence++);
+        byPlayer.put(offer.playerID(), offer);
+        delayed.add(offer);
+    }
+
+    public synchronized void cancel(@NotNull UUID playerID) {
+        QueuedOffer previous = byPlayer.remove(playerID);
+        if (previous != null && !delayed.remove(previous)) {
+            ready.remove(previous);
+        }
+    }
+
+    @Override
+    public void run() {
+        int rate = plugin.config().get(Config.dispatcherOffersPerSecond);
+        long now = System.currentTimeMillis();
+        List<QueuedOffer> toSend = null;
+        synchronized (this) {
+            if (rate > 0) {
+                // at most one tick worth of offers is saved up
+                tokens = Math.min(Math.max(1.0D, rate / 20.0D), tokens + rate / 20.0D);
+            }
+            if (byPlayer.isEmpty()) return;
+            while (!delayed.isEmpty() && delayed.peek().notBefore() <= now) {
+                ready.add(delayed.poll());
+            }
+            while (!ready.isEmpty() && (rate <= 0 || tokens >= 1.0D || ready.peek().priority() == PRIORITY_CACHED)) {
+                QueuedOffer offer = ready.poll();
+                byPlayer.remove(offer.playerID());
+                if (offer.priority() != PRIORITY_CACHED) {
+                    tokens -= 1.0D;
+                }
+                long latency = now - offer.queuedAt();
+                lastLatency = latency;
+                maxLatency = Math.max(maxLatency, latency);
+                averageLatency = sent == 0 ? latency : averageLatency * 0.9D + latency * 0.1D;
+                sent++;
+                if (toSend == null) {
+                    toSend = new ArrayList<>();
+                }
+                toSend.add(offer);
+            }
+            if (rate <= 0) {
+                tokens = 0.0D;
+            }
+        }
+        if (toSend == null) return;
+        for (QueuedOffer offer : toSend) {
+            Player player = Bukkit.getPlayer(offer.playerID());
+            if (player != null) {
+                dispatcher.sendOfferAsDefault(player, offer.uploadedPack());
+            }
+        }
+    }
+
+    public synchronized @NotNull Stats getStats() {
+        long oldest = 0L;
+        long now = System.currentTimeMillis();
+        for (QueuedOffer offer : byPlayer.values()) {
+            oldest = Math.max(oldest, now - offer.queuedAt());
+        }
+        return new Stats(byPlayer.size(), oldest, sent, lastLatency, (long) averageLatency, maxLatency);
+    }
+
+    /**
+     * @param queued offers waiting to be sent
+     * @param oldestWait millis the oldest queued offer has been waiting
+     * @param sent offers sent since start
+     * @param lastLatency millis between queueing and sending of the last offer
+     * @param averageLatency moving average of the latency in millis
+     * @param maxLatency highest latency in millis
+     */
+    public record Stats(int queued, long oldestWait, long sent, long lastLatency, long averageLatency, long maxLatency) {
+    }
+
+    private record QueuedOffer(UUID playerID, UploadedPack uploadedPack, int priority,
+                               long queuedAt, long notBefore, long sequence) {
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * This file is part of ProPack, a Minecraft resource pack toolkit
+ * Copyright (C) Michael Neonov <two.nelonn@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.nelonn.propack.bukkit.dispatcher;
+
+import me.nelonn.propack.Resources;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Pack state of one online player. Every change swaps an immutable {@link Snapshot},
+ * so packet threads read it without locks and never see half-applied transitions.
+ */
+public final class PlayerPackState {
+    private final UUID playerID;
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(Snapshot.EMPTY);
+
+    PlayerPackState(@NotNull UUID playerID) {
+        this.playerID = playerID;
+    }
+
+    public @NotNull UUID getPlayerID() {
+        return playerID;
+    }
+
+    public @NotNull Snapshot get() {
+        return snapshot.get();
+    }
+
+    public @Nullable Resources getResources() {
+        return snapshot.get().resources();
+    }
+
+    void offer(@NotNull ActivePack pack) {
+        snapshot.updateAndGet(s -> new Snapshot(pack, System.currentTimeMillis(), s.active(), s.activatedAt(), s.resources(), s.version()));
+    }
+
+    /**
+     * @return pending pack, null if nothing was offered
+     */
+    @Nullable ActivePack takePending() {
+        Snapshot current;
+        do {
+            current = snapshot.get();
+            if (current.pending() == null) return null;
+        } while (!snapshot.compareAndSet(current, new Snapshot(null, 0L, current.active(), current.activatedAt(), current.resources(), current.version())));
+        return current.pending();
+    }
+
+    void activate(@Nullable ActivePack pack, @Nullable Resources resources) {
+        snapshot.updateAndGet(s -> new Snapshot(s.pending(), s.offeredAt(), pack, System.currentTimeMillis(), resources, s.version() + 1));
+    }
+
+    /**
+     * Replaces resolved resources unless the player was activated again since {@code version} was read
+     */
+    boolean refresh(int version, @Nullable ActivePack pack, @Nullable Resources resources) {
+        Snapshot current;
+        do {
+            current = snapshot.get();
+            if (current.version() != version) return false;
+        } while (!snapshot.compareAndSet(current, new Snapshot(current.pending(), current.offeredAt(), pack, current.activatedAt(), resources, version)));
+        return true;
+    }
+
+    void clear() {
+        snapshot.set(Snapshot.EMPTY);
+    }
+
+    /**
+     * @param pending pack offered but not loaded yet
+     * @param offeredAt time of the last offer in millis, 0 if nothing is pending
+     * @param active pack loaded by the player
+     * @param activatedAt time the active pack was loaded in millis
+     * @param resources resources of the active pack, null if it is unknown or not built
+     * @param version incremented on every activation
+     */
+    public record Snapshot(@Nullable ActivePack pending, long offeredAt,
+                           @Nullable ActivePack active, long activatedAt,
+                           @Nullable Resources resources, int version) {
+        public static final Snapshot EMPTY = new Snapshot(null, 0L, null, 0L, null, 0);
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * This file is part of ProPack, a Minecraft resource pack toolkit
+ * Copyright (C) Michael Neonov <two.nelonn@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.nelonn.propack.bukkit.dispatcher;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Storage shared between servers, used by {@link NetworkActivePackStore}. Called from background threads.
+ */
+public interface StoreTransport extends Closeable {
+
+    @Nullable Entry fetch(@NotNull UUID playerID) throws IOException;
+
+    /**
+     * @param changes entry by player, null values clear the player
+     */
+    void push(@NotNull Map<UUID, Entry> changes) throws IOException;
+
+    @Override
+    default void close() throws IOException {
+    }
+
+    /**
+     * @param leftAt millis since epoch when the player left the server that wrote the entry, 0 while still connected
+     */
+    record Entry(@NotNull ActivePack pack, long leftAt) {
+    }
+}
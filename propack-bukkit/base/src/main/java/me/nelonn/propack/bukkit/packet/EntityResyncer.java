@@ -0,0 +1,95 @@
+/*
+ * This file is part of ProPack, a Minecraft resource pack toolkit
+ * Copyright (C) Michael Neonov <two.nelonn@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.nelonn.propack.bukkit.packet;
+
+import me.nelonn.propack.bukkit.Config;
+import me.nelonn.propack.bukkit.ProPackPlugin;
+import me.nelonn.propack.bukkit.adapter.Adapter;
+import me.nelonn.propack.bukkit.adapter.AdapterLoader;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Re-sends item carrying data of tracked entities to players who just loaded a pack.
+ * Only a few entities are handled per tick, players wait in order. Main thread only.
+ */
+public class EntityResyncer implements Runnable {
+    private final ProPackPlugin plugin;
+    private final Adapter adapter;
+    // entities left per player, null until the player's turn
+    private final Map<UUID, Iterator<Entity>> queue = new LinkedHashMap<>();
+
+    public EntityResyncer(@NotNull ProPackPlugin plugin) {
+        this.plugin = plugin;
+        this.adapter = Objects.requireNonNull(AdapterLoader.ADAPTER, "Adapter not loaded");
+    }
+
+    public static @NotNull EntityResyncer register(@NotNull ProPackPlugin plugin) {
+        EntityResyncer entityResyncer = new EntityResyncer(plugin);
+        plugin.getServer().getScheduler().runTaskTimer(plugin, entityResyncer, 1L, 1L);
+        return entityResyncer;
+    }
+
+    public void schedule(@NotNull Player player) {
+        // a new activation starts over at the end of the queue
+        queue.remove(player.getUniqueId());
+        queue.put(player.getUniqueId(), null);
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    @Override
+    public void run() {
+        if (queue.isEmpty()) return;
+        int budget = Math.max(1, plugin.config().get(Config.patchPacketResyncPerTick));
+        Iterator<Map.Entry<UUID, Iterator<Entity>>> jobs = queue.entrySet().iterator();
+        while (budget > 0 && jobs.hasNext()) {
+            Map.Entry<UUID, Iterator<Entity>> job = jobs.next();
+            Player player = plugin.getServer().getPlayer(job.getKey());
+            if (player == null) {
+                jobs.remove();
+                continue;
+            }
+            Iterator<Entity> entities = job.getValue();
+            if (entities == null) {
+                entities = adapter.getTrackedEntities(player).iterator();
+                job.setValue(entities);
+            }
+            while (budget > 0 && entities.hasNext()) {
+                Entity entity = entities.next();
+                if (entity.isValid()) {
+                    adapter.resendEntityItems(player, entity);
+                }
+                budget--;
+            }
+            if (!entities.hasNext()) {
+                jobs.remove();
+            }
+        }
+    }
+}
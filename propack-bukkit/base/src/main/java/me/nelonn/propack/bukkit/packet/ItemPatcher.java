@@ -20,26 +20,22 @@ package me.nelonn.propack.bukkit.packet;
 
 import me.nelonn.configlib.PluginConfig;
 import me.nelonn.flint.path.Key;
-import me.nelonn.flint.path.Path;
+import me.nelonn.propack.CustomModelLookup;
 import me.nelonn.propack.Resources;
-import me.nelonn.propack.asset.CombinedItemModel;
-import me.nelonn.propack.asset.DefaultItemModel;
-import me.nelonn.propack.asset.ItemModel;
-import me.nelonn.propack.asset.SlotItemModel;
 import me.nelonn.propack.bukkit.Config;
 import me.nelonn.propack.bukkit.ProPack;
 import me.nelonn.propack.bukkit.adapter.MCompoundTag;
 import me.nelonn.propack.bukkit.adapter.MItemStack;
 import me.nelonn.propack.bukkit.adapter.MListTag;
 import me.nelonn.propack.core.util.LogManagerCompat;
-import org.bukkit.Material;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 
-import java.nio.file.InvalidPathException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.function.Consumer;
 
+/**
+ * Results are memoized by the bounded table of {@link CustomModelLookup}, nothing is cached here
+ */
 public class ItemPatcher {
     private static final Logger LOGGER = LogManagerCompat.getLogger();
     private static final int TAG_STRING = 8;
@@ -60,63 +56,51 @@ public class ItemPatcher {
         itemStack.removeCustomModelData();
     }
 
+    /**
+     * Patcher for all stacks of one packet
+     */
+    public @NotNull Consumer<MItemStack> clientboundItemPatcher(@NotNull Resources resources) {
+        return itemStack -> patchClientboundItem(itemStack, resources);
+    }
+
     public void patchClientboundItem(@NotNull MItemStack itemStack, @NotNull Resources resources) {
         try {
             MCompoundTag rootTag = itemStack.getCustomData();
             if (rootTag == null || !rootTag.contains(ProPack.CUSTOM_MODEL, TAG_STRING)) return;
             String customModel = rootTag.getString(ProPack.CUSTOM_MODEL);
             if (customModel.isEmpty()) return;
-            Path path;
-            try {
-                path = Path.of(customModel);
-            } catch (InvalidPathException e) {
-                if (isDebug()) {
-                    LOGGER.error("[ItemPatcherDebug] Invalid custom model path {}", customModel, e);
-                }
-                return;
-            }
-            ItemModel itemModel = resources.itemModel(path);
-            if (itemModel == null) {
+            CustomModelLookup.Model model = resources.getCustomModelLookup().model(customModel);
+            if (model == null) {
                 if (isDebug()) {
-                    LOGGER.error("[ItemPatcherDebug] Model not found {}", path);
+                    LOGGER.error("[ItemPatcherDebug] Model not found {}", customModel);
                 }
                 return;
             }
-            Path mesh;
-            if (itemModel instanceof DefaultItemModel defaultItemModel) {
-                mesh = defaultItemModel.getMesh();
-            } else if (itemModel instanceof CombinedItemModel combinedItemModel) {
+            Key itemType = itemStack.getItemId();
+            CustomModelLookup.Result result;
+            if (model instanceof CustomModelLookup.CombinedModel combinedModel) {
                 MListTag listTag = rootTag.getList("CombinedItemModel", TAG_STRING);
-                mesh = combinedItemModel.getMesh(listTag.asStringCollection().toArray(String[]::new));
-            } else if (itemModel instanceof SlotItemModel slotItemModel) {
+                result = combinedModel.resolve(itemType, listTag.asStringCollection());
+            } else if (model instanceof CustomModelLookup.SlotModel slotModel) {
                 MCompoundTag compoundTag = rootTag.getCompound("SlotItemModel");
-                Map<String, String> slots = new HashMap<>();
-                for (SlotItemModel.Slot slot : slotItemModel.getSlots()) {
-                    String element = compoundTag.getString(slot.getName());
-                    if (element.isEmpty()) continue;
-                    slots.put(slot.getName(), element);
-                }
-                mesh = slotItemModel.getMesh(slots);
+                result = slotModel.resolve(itemType, compoundTag::getString);
             } else {
-                return;
+                result = model.resolve(itemType);
             }
-            Material material = Material.matchMaterial(itemStack.getItemId().toString());
-            assert material != null;
-            Key itemType = ProPack.adapt(material);
-            if (!itemModel.getTargetItems().contains(itemType)) {
+            if (!result.isTargetItem()) {
                 if (isDebug()) {
                     LOGGER.error("[ItemPatcherDebug] Not target item {}", itemType);
                 }
                 return;
             }
-            Integer cmd = resources.getMeshes().getCustomModelData(mesh, itemType);
+            Integer cmd = result.getCustomModelData();
             if (cmd == null) {
                 if (isDebug()) {
-                    LOGGER.error("[ItemPatcherDebug] {} custom model data not found for {}", itemType, mesh);
+                    LOGGER.error("[ItemPatcherDebug] {} custom model data not found for {}", itemType, result.getMesh());
                 }
                 return;
             }
-            if (itemStack.setNewItemModel(Path.of("propack", itemType.value() + "." + Integer.toHexString(cmd)))) {
+            if (result.getNewItemModel() != null && itemStack.setNewItemModel(result.getNewItemModel())) {
                 return;
             }
             itemStack.setCustomModelData(cmd);
@@ -124,5 +108,4 @@ public class ItemPatcher {
             LOGGER.error("Failed to patch item", e);
         }
     }
-
 }
@@ -26,7 +26,6 @@ import com.comphenix.protocol.events.PacketContainer;
 import com.comphenix.protocol.events.PacketEvent;
 import com.comphenix.protocol.injector.GamePhase;
 import me.nelonn.flint.path.Path;
-import me.nelonn.propack.ResourcePack;
 import me.nelonn.propack.Resources;
 import me.nelonn.propack.asset.SoundAsset;
 import me.nelonn.propack.bukkit.Config;
@@ -36,31 +35,36 @@ import me.nelonn.propack.bukkit.adapter.Adapter;
 import me.nelonn.propack.bukkit.adapter.AdapterLoader;
 import me.nelonn.propack.bukkit.adapter.IPacketListener;
 import me.nelonn.propack.bukkit.adapter.MItemStack;
+import me.nelonn.propack.bukkit.dispatcher.PlayerPackState;
 import org.bukkit.entity.Player;
-import org.bukkit.event.EventHandler;
-import org.bukkit.event.EventPriority;
-import org.bukkit.event.Listener;
-import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.plugin.Plugin;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.Objects;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
-public class PacketListener implements IPacketListener, Listener {
+public class PacketListener implements IPacketListener {
     private final ProPackPlugin plugin;
     private final Adapter adapter;
     private final ItemPatcher packetPatcher;
     private final boolean thirdPartyInjector;
+    // only read by identity, packets without a handler leave after one lookup
+    private volatile Map<Class<?>, PacketHandler> sendHandlers = Collections.emptyMap();
 
     @SuppressWarnings("deprecation")
     public PacketListener(@NotNull ProPackPlugin plugin) {
         this.plugin = plugin;
         this.adapter = Objects.requireNonNull(AdapterLoader.ADAPTER, "Adapter not loaded");
         this.packetPatcher = plugin.getItemPatcher();
-        if (plugin.getServer().getPluginManager().isPluginEnabled("ProtocolLib")) {
+        reload();
+        if ("protocollib".equalsIgnoreCase(plugin.config().get(Config.patchPacketInjector))
+                && plugin.getServer().getPluginManager().isPluginEnabled("ProtocolLib")) {
             plugin.getLogger().info("Using third-party packet injector: ProtocolLib");
             ProtocolLibrary.getProtocolManager().addPacketListener(new com.comphenix.protocol.events.PacketListener() {
                 private static ListeningWhitelist buildWhitelist(PacketType... packetTypes) {
@@ -127,21 +131,23 @@ public class PacketListener implements IPacketListener, Listener {
             });
             thirdPartyInjector = true;
         } else {
-            plugin.getLogger().warning("Builtin packet injector is not recommended! Install ProtocolLib");
+            plugin.getLogger().info("Using builtin packet injector");
             thirdPartyInjector = false;
         }
     }
 
-    public static void register(@NotNull ProPackPlugin plugin) {
+    public static @NotNull PacketListener register(@NotNull ProPackPlugin plugin) {
         PacketListener packetListener = new PacketListener(plugin);
         if (!packetListener.thirdPartyInjector) {
-            plugin.getServer().getPluginManager().registerEvents(packetListener, plugin);
+            packetListener.adapter.installInjector(packetListener);
         }
+        return packetListener;
     }
 
-    @EventHandler(priority = EventPriority.HIGH)
-    private void on(PlayerJoinEvent event) {
-        adapter.inject(event.getPlayer(), this);
+    public void unregister() {
+        if (!thirdPartyInjector) {
+            adapter.uninstallInjector();
+        }
     }
 
     private @NotNull String patchSound(@NotNull Resources resources, @NotNull String original) {
@@ -152,35 +158,52 @@ public class PacketListener implements IPacketListener, Listener {
         return soundAsset.realPath().toString();
     }
 
-    @Override
-    public @Nullable Object onPacketSend(@NotNull Player player, @NotNull Object packet) {
-        ResourcePack resourcePack = ProPack.getCore().getDispatcher().getAppliedResourcePack(player);
-        if (resourcePack == null) return packet;
-        final Resources resources = resourcePack.resources();
-        Class<?> type = packet.getClass();
+    /**
+     * Rebuilds the packet class dispatch table from the current config
+     */
+    public void reload() {
+        Map<Class<?>, PacketHandler> handlers = new IdentityHashMap<>();
         if (plugin.config().get(Config.patchPacketItems)) {
-            BiFunction<Object, Consumer<MItemStack>, Object> method = null;
-            if (type == adapter.getClientboundContainerSetSlotPacket()) {
-                method = adapter::patchClientboundContainerSetSlotPacket;
-            } else if (type == adapter.getClientboundContainerSetContentPacket()) {
-                method = adapter::patchClientboundContainerSetContentPacket;
-            } else if (type == adapter.getClientboundSetEntityEquipmentPacket()) {
-                method = adapter::patchClientboundSetEntityEquipmentPacket;
-            } else if (type == adapter.getClientboundSetEntityDataPacket()) {
-                method = adapter::patchClientboundSetEntityDataPacket;
-            }
-            if (method != null) {
-                return method.apply(packet, stack -> packetPatcher.patchClientboundItem(stack, resources));
-            }
+            putItemHandler(handlers, adapter.getClientboundContainerSetSlotPacket(), adapter::patchClientboundContainerSetSlotPacket);
+            putItemHandler(handlers, adapter.getClientboundContainerSetContentPacket(), adapter::patchClientboundContainerSetContentPacket);
+            putItemHandler(handlers, adapter.getClientboundSetEntityEquipmentPacket(), adapter::patchClientboundSetEntityEquipmentPacket);
+            putItemHandler(handlers, adapter.getClientboundSetEntityDataPacket(), adapter::patchClientboundSetEntityDataPacket);
         }
         if (plugin.config().get(Config.patchPacketSounds)) {
-            if (type == adapter.getClientboundSoundPacket() || type == adapter.getClientboundCustomSoundPacket()) {
-                return adapter.patchClientboundSoundPacket(packet, original -> patchSound(resources, original));
-            } else if (type == adapter.getClientboundSoundEntityPacket()) {
-                return adapter.patchClientboundSoundEntityPacket(packet, original -> patchSound(resources, original));
-            }
+            putSoundHandler(handlers, adapter.getClientboundSoundPacket(), adapter::patchClientboundSoundPacket);
+            putSoundHandler(handlers, adapter.getClientboundCustomSoundPacket(), adapter::patchClientboundSoundPacket);
+            putSoundHandler(handlers, adapter.getClientboundSoundEntityPacket(), adapter::patchClientboundSoundEntityPacket);
         }
-        return packet;
+        sendHandlers = handlers;
+    }
+
+    private void putItemHandler(@NotNull Map<Class<?>, PacketHandler> handlers, @NotNull Class<?> type,
+                                @NotNull BiFunction<Object, Consumer<MItemStack>, Object> method) {
+        handlers.put(type, (packet, resources) -> {
+            if (!resources.contains(Resources.ITEM_MODELS)) return packet;
+            return method.apply(packet, packetPatcher.clientboundItemPatcher(resources));
+        });
+    }
+
+    private void putSoundHandler(@NotNull Map<Class<?>, PacketHandler> handlers, @Nullable Class<?> type,
+                                 @NotNull BiFunction<Object, Function<String, String>, Object> method) {
+        if (type == null) return;
+        handlers.put(type, (packet, resources) -> {
+            if (!resources.contains(Resources.SOUNDS)) return packet;
+            return method.apply(packet, original -> patchSound(resources, original));
+        });
+    }
+
+    @Override
+    public @Nullable Object onPacketSend(@NotNull Player player, @NotNull Object packet) {
+        // the handler table is checked first, so only patched packet types pay for the player lookup
+        PacketHandler handler = sendHandlers.get(packet.getClass());
+        if (handler == null) return packet;
+        PlayerPackState state = ProPack.getCore().getDispatcher().getStateIfPresent(player.getUniqueId());
+        if (state == null) return packet;
+        Resources resources = state.getResources();
+        if (resources == null) return packet;
+        return handler.handle(packet, resources);
     }
 
     @Override
@@ -190,4 +213,9 @@ public class PacketListener implements IPacketListener, Listener {
         }
         return packet;
     }
+
+    @FunctionalInterface
+    private interface PacketHandler {
+        @Nullable Object handle(@NotNull Object packet, @NotNull Resources resources);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,145 @@
+/*
+ * This file is part of ProPack, a Minecraft resource pack toolkit
+ * Copyright (C) Michael Neonov <two.nelonn@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.nelonn.propack.bukkit.dispatcher;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileActivePackStoreTest {
+    private static final UUID FIRST = new UUID(0L, 1L);
+    private static final UUID SECOND = new UUID(0L, 2L);
+    private static final UUID THIRD = new UUID(0L, 3L);
+
+    @TempDir
+    Path directory;
+
+    private File log() {
+        return directory.resolve("active_packs.log").toFile();
+    }
+
+    private static void assertPack(String name, String sha1, ActivePack activePack) {
+        assertNotNull(activePack);
+        assertEquals(name, activePack.name);
+        assertEquals(sha1, activePack.sha1);
+    }
+
+    @Test
+    void replaysLastLoadedPacksButNotSessions() {
+        FileActivePackStore store = new FileActivePackStore(log());
+        store.setActiveResourcePack(FIRST, new ActivePack("example", "aaaa"));
+        store.setActiveResourcePack(SECOND, new ActivePack("example", null));
+        store.setActiveResourcePack(FIRST, new ActivePack("example", "bbbb"));
+        assertPack("example", "bbbb", store.getActiveResourcePack(FIRST));
+        store.close();
+
+        FileActivePackStore reopened = new FileActivePackStore(log());
+        assertNull(reopened.getActiveResourcePack(FIRST));
+        assertPack("example", "bbbb", reopened.getCachedResourcePack(FIRST));
+        assertPack("example", null, reopened.getCachedResourcePack(SECOND));
+        assertEquals(2, reopened.size());
+        reopened.close();
+    }
+
+    @Test
+    void forgetEndsSessionOnly() {
+        FileActivePackStore store = new FileActivePackStore(log());
+        store.setActiveResourcePack(FIRST, new ActivePack("example", "aaaa"));
+        store.forget(FIRST);
+        assertNull(store.getActiveResourcePack(FIRST));
+        assertPack("example", "aaaa", store.getCachedResourcePack(FIRST));
+        store.setActiveResourcePack(FIRST, new ActivePack("example", "aaaa"));
+        store.setActiveResourcePack(FIRST, null);
+        assertNull(store.getActiveResourcePack(FIRST));
+        assertPack("example", "aaaa", store.getCachedResourcePack(FIRST));
+        store.close();
+    }
+
+    @Test
+    void compactsLogOfRepeatedChanges() throws Exception {
+        FileActivePackStore store = new FileActivePackStore(log());
+        for (int i = 0; i < 5000; i++) {
+            store.setActiveResourcePack(i % 2 == 0 ? FIRST : SECOND, new ActivePack("example", Integer.toString(i)));
+        }
+        store.close();
+        // header and at most COMPACT_MIN_RECORDS records of about 30 bytes
+        assertTrue(Files.size(log().toPath()) < 40 * 1024, "log was not compacted");
+
+        FileActivePackStore reopened = new FileActivePackStore(log());
+        assertPack("example", "4998", reopened.getCachedResourcePack(FIRST));
+        assertPack("example", "4999", reopened.getCachedResourcePack(SECOND));
+        reopened.close();
+    }
+
+    @Test
+    void keepsMostRecentPlayers() {
+        FileActivePackStore store = new FileActivePackStore(log(), 2);
+        store.setActiveResourcePack(FIRST, new ActivePack("example", "aaaa"));
+        store.setActiveResourcePack(SECOND, new ActivePack("example", "aaaa"));
+        store.setActiveResourcePack(FIRST, new ActivePack("example", "bbbb"));
+        store.setActiveResourcePack(THIRD, new ActivePack("example", "aaaa"));
+        assertNull(store.getCachedResourcePack(SECOND));
+        store.close();
+
+        FileActivePackStore reopened = new FileActivePackStore(log(), 2);
+        assertPack("example", "bbbb", reopened.getCachedResourcePack(FIRST));
+        assertNull(reopened.getCachedResourcePack(SECOND));
+        assertPack("example", "aaaa", reopened.getCachedResourcePack(THIRD));
+        reopened.close();
+    }
+
+    @Test
+    void dropsPartialRecord() throws Exception {
+        FileActivePackStore store = new FileActivePackStore(log());
+        store.setActiveResourcePack(FIRST, new ActivePack("example", "aaaa"));
+        store.setActiveResourcePack(SECOND, new ActivePack("example", "bbbb"));
+        store.close();
+        try (RandomAccessFile file = new RandomAccessFile(log(), "rw")) {
+            file.setLength(file.length() - 3);
+        }
+
+        FileActivePackStore reopened = new FileActivePackStore(log());
+        assertPack("example", "aaaa", reopened.getCachedResourcePack(FIRST));
+        assertNull(reopened.getCachedResourcePack(SECOND));
+        reopened.close();
+    }
+
+    @Test
+    void backsUpDamagedLog() throws Exception {
+        byte[] garbage = "not a log".getBytes(StandardCharsets.UTF_8);
+        Files.write(log().toPath(), garbage);
+
+        FileActivePackStore store = new FileActivePackStore(log());
+        store.setActiveResourcePack(FIRST, new ActivePack("example", "aaaa"));
+        store.close();
+        assertArrayEquals(garbage, Files.readAllBytes(directory.resolve("active_packs.log.corrupt")));
+
+        FileActivePackStore reopened = new FileActivePackStore(log());
+        assertPack("example", "aaaa", reopened.getCachedResourcePack(FIRST));
+        reopened.close();
+    }
+}
@@ -32,12 +32,25 @@ dependencies {
     compileOnly("org.apache.commons:commons-lang3:3.12.0")
 
     compileOnly("org.jetbrains:annotations:24.1.0")
+
+    testImplementation("org.junit.jupiter:junit-jupiter:5.10.2")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+    testImplementation(files("../libs/flint-path-0.0.1.jar"))
+    testImplementation("com.google.code.gson:gson:2.10.1")
+    testImplementation("com.google.guava:guava:33.0.0-jre")
+    testImplementation("org.slf4j:slf4j-api:2.0.7")
+    testImplementation("net.kyori:adventure-api:$adventureVersion")
+    testImplementation("org.jetbrains:annotations:24.1.0")
 }
 
 tasks.withType<JavaCompile> {
     options.encoding = "UTF-8"
 }
 
+tasks.test {
+    useJUnitPlatform()
+}
+
 tasks.named<Copy>("processResources") {
     filteringCharset = "UTF-8"
 }
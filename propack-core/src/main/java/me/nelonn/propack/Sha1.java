@@ -20,8 +20,12 @@ package me.nelonn.propack;
 
 import org.jetbrains.annotations.NotNull;
 
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
@@ -63,6 +67,21 @@ public final class Sha1 {
         return fromHashBytes(bytes);
     }
 
+    public static @NotNull Sha1 fromBytes(byte @NotNull [] data) {
+        return hasher().update(data).finish();
+    }
+
+    /**
+     * @return incremental hasher, for hashing data while it is written or read
+     */
+    public static @NotNull Hasher hasher() {
+        try {
+            return new Hasher(MessageDigest.getInstance("SHA-1"));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     private static byte @NotNull [] hash(@NotNull InputStream inputStream) throws IOException, NoSuchAlgorithmException {
         MessageDigest digest = MessageDigest.getInstance("SHA-1");
         byte[] buffer = new byte[8 * 1024];
@@ -73,6 +92,96 @@ public final class Sha1 {
         return digest.digest();
     }
 
+    /**
+     * Not thread safe. {@link #finish()} may be called once.
+     */
+    public static final class Hasher {
+        private final MessageDigest digest;
+        private boolean finished;
+
+        private Hasher(@NotNull MessageDigest digest) {
+            this.digest = digest;
+        }
+
+        public @NotNull Hasher update(byte @NotNull [] data) {
+            return update(data, 0, data.length);
+        }
+
+        public @NotNull Hasher update(byte @NotNull [] data, int offset, int length) {
+            checkNotFinished();
+            digest.update(data, offset, length);
+            return this;
+        }
+
+        public @NotNull Hasher update(@NotNull ByteBuffer data) {
+            checkNotFinished();
+            digest.update(data);
+            return this;
+        }
+
+        /**
+         * Everything written through the returned stream is hashed before being passed to the given one
+         */
+        public @NotNull OutputStream wrap(@NotNull OutputStream outputStream) {
+            return new FilterOutputStream(outputStream) {
+                @Override
+                public void write(int b) throws IOException {
+                    update(new byte[]{(byte) b});
+                    out.write(b);
+                }
+
+                @Override
+                public void write(byte @NotNull [] b, int off, int len) throws IOException {
+                    update(b, off, len);
+                    out.write(b, off, len);
+                }
+            };
+        }
+
+        /**
+         * Everything read from the returned stream is hashed
+         */
+        public @NotNull InputStream wrap(@NotNull InputStream inputStream) {
+            return new FilterInputStream(inputStream) {
+                @Override
+                public int read() throws IOException {
+                    int b = in.read();
+                    if (b != -1) update(new byte[]{(byte) b});
+                    return b;
+                }
+
+                @Override
+                public int read(byte @NotNull [] b, int off, int len) throws IOException {
+                    int read = in.read(b, off, len);
+                    if (read > 0) update(b, off, read);
+                    return read;
+                }
+
+                @Override
+                public long skip(long n) throws IOException {
+                    byte[] buffer = new byte[(int) Math.min(n, 8 * 1024)];
+                    int read = read(buffer, 0, buffer.length);
+                    return Math.max(read, 0);
+                }
+
+                @Override
+                public boolean markSupported() {
+                    return false;
+                }
+            };
+        }
+
+        public @NotNull Sha1 finish() {
+            checkNotFinished();
+            finished = true;
+            return fromHashBytes(digest.digest());
+        }
+
+        private void checkNotFinished() {
+            if (finished) throw new IllegalStateException("Hasher is already finished");
+        }
+    }
+
     private static @NotNull String bytesToString(byte[] hash) {
         StringBuilder sb = new StringBuilder();
         for (byte b : hash) {
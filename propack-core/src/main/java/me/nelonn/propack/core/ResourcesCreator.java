@@ -18,6 +18,7 @@
 
 package me.nelonn.propack.core;
 
+import me.nelonn.propack.CustomModelLookup;
 import me.nelonn.propack.Meshes;
 import me.nelonn.propack.Resources;
 import me.nelonn.propack.core.asset.*;
@@ -32,12 +33,22 @@ public class ResourcesCreator {
                                    @NotNull Collection<ArmorTextureBuilder> armorTextures,
                                    @NotNull Collection<FontBuilder> fonts,
                                    @NotNull Meshes meshes) {
+        return create(itemModels, soundAssets, armorTextures, fonts, meshes, CustomModelLookup.DEFAULT_CACHE_SIZE);
+    }
+
+    public static Resources create(@NotNull Collection<ItemModelBuilder> itemModels,
+                                   @NotNull Collection<SoundAssetBuilder> soundAssets,
+                                   @NotNull Collection<ArmorTextureBuilder> armorTextures,
+                                   @NotNull Collection<FontBuilder> fonts,
+                                   @NotNull Meshes meshes,
+                                   int lookupCacheSize) {
         return new Resources(
                 itemModels.stream().map(AssetBuilder::build).collect(Collectors.toList()),
                 soundAssets.stream().map(AssetBuilder::build).collect(Collectors.toList()),
                 armorTextures.stream().map(AssetBuilder::build).collect(Collectors.toList()),
                 fonts.stream().map(AssetBuilder::build).collect(Collectors.toList()),
-                meshes
+                meshes,
+                lookupCacheSize
         );
     }
 }
@@ -28,6 +28,7 @@ import java.util.Set;
 public class CombinedItemModelBuilder extends ItemModelBuilder {
     private Path mesh;
     private Set<String> elements;
+    private CombinedItemModel.Constraints constraints = CombinedItemModel.Constraints.NONE;
 
     public CombinedItemModelBuilder(@NotNull Path path) {
         super(path);
@@ -56,7 +57,16 @@ public class CombinedItemModelBuilder extends ItemModelBuilder {
         return this;
     }
 
+    public CombinedItemModel.Constraints getConstraints() {
+        return constraints;
+    }
+
+    public CombinedItemModelBuilder setConstraints(CombinedItemModel.Constraints constraints) {
+        this.constraints = constraints;
+        return this;
+    }
+
     public @NotNull CombinedItemModel build() {
-        return new CombinedItemModel(path, targetItems, mesh, elements);
+        return new CombinedItemModel(path, targetItems, mesh, elements, constraints);
     }
 }
@@ -23,29 +23,61 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import me.nelonn.flint.path.Key;
 import me.nelonn.flint.path.Path;
+import me.nelonn.propack.CustomModelLookup;
 import me.nelonn.propack.MeshesMap;
 import me.nelonn.propack.Resources;
 import me.nelonn.propack.asset.SlotItemModel;
 import me.nelonn.propack.core.ResourcesCreator;
 import me.nelonn.propack.core.asset.*;
 import me.nelonn.propack.core.util.GsonHelper;
-import me.nelonn.propack.core.util.IOUtil;
 import me.nelonn.propack.core.util.Util;
 import org.jetbrains.annotations.NotNull;
 
 import java.awt.*;
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.*;
 
 public class ProPackFileLoader {
+    private final int lookupCacheSize;
+
+    public ProPackFileLoader() {
+        this(CustomModelLookup.DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param lookupCacheSize number of cached custom model lookups per loaded pack, 0 disables caching
+     */
+    public ProPackFileLoader(int lookupCacheSize) {
+        this.lookupCacheSize = lookupCacheSize;
+    }
+
+    /**
+     * Binary indexes are read into one buffer and decoded on access, json ones are read as text.
+     * The file is not kept open or mapped, so a rebuild can replace it while the pack is loaded.
+     */
     public @NotNull Resources load(@NotNull File file) {
         try {
-            return load(IOUtil.readString(file));
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+            if (ProPackIndexFormat.isIndex(buffer)) {
+                return load(buffer);
+            }
+            return load(StandardCharsets.UTF_8.decode(buffer).toString());
         } catch (Exception e) {
             throw new IllegalArgumentException("Something went wrong when loading '" + file.getName() + "'", e);
         }
     }
 
+    public @NotNull Resources load(@NotNull ByteBuffer buffer) {
+        try {
+            return ProPackIndexFormat.read(buffer, lookupCacheSize);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Something went wrong when loading resource pack", e);
+        }
+    }
+
     public @NotNull Resources load(@NotNull String content) {
         try {
             JsonObject root = GsonHelper.deserialize(content);
@@ -142,7 +174,8 @@ public class ProPackFileLoader {
                     sounds.values(),
                     armorTextures.values(),
                     fonts.values(),
-                    meshMapping
+                    meshMapping,
+                    lookupCacheSize
             );
         } catch (Exception e) {
             throw new IllegalArgumentException("Something went wrong when loading resource pack", e);
@@ -0,0 +1,403 @@
+/*
+ * This file is part of ProPack, a Minecraft resource pack toolkit
+ * Copyright (C) Michael Neonov <two.nelonn@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.nelonn.propack.core.loader;
+
+import me.nelonn.flint.path.Key;
+import me.nelonn.flint.path.Path;
+import me.nelonn.propack.CustomModelLookup;
+import me.nelonn.propack.Meshes;
+import me.nelonn.propack.Resources;
+import me.nelonn.propack.asset.CombinedItemModel;
+import me.nelonn.propack.asset.SlotItemModel;
+import me.nelonn.propack.core.ResourcesCreator;
+import me.nelonn.propack.core.asset.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.awt.*;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Binary encoding of the .propack index.
+ * <pre>
+ * int magic, short version
+ * int stringCount, int[stringCount + 1] string offsets, utf-8 string data
+ * int name
+ * item models, sounds, armor textures, fonts: int count, entries
+ * combined item models end with their constraints since version 2
+ * mesh mapping: int itemCount, (int itemId, int entriesOffset)[itemCount], entries
+ * </pre>
+ * All strings are indexes into the string table, numbers are big-endian.
+ * Strings and the mesh mapping of each item are decoded on first use.
+ */
+public final class ProPackIndexFormat {
+    public static final int MAGIC = 0x50504958; // PPIX
+    public static final int VERSION = 2;
+    private static final byte DEFAULT_ITEM_MODEL = 0;
+    private static final byte COMBINED_ITEM_MODEL = 1;
+    private static final byte SLOT_ITEM_MODEL = 2;
+
+    public static boolean isIndex(@NotNull ByteBuffer buffer) {
+        return buffer.remaining() >= 4 && buffer.getInt(buffer.position()) == MAGIC;
+    }
+
+    public static void write(@NotNull OutputStream outputStream,
+                             @NotNull String name,
+                             @NotNull Collection<ItemModelBuilder> itemModels,
+                             @NotNull Collection<SoundAssetBuilder> sounds,
+                             @NotNull Collection<ArmorTextureBuilder> armorTextures,
+                             @NotNull Collection<FontBuilder> fonts,
+                             @NotNull Map<Key, Map<Path, Integer>> meshMapping) throws IOException {
+        StringTable strings = new StringTable();
+        ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream();
+        DataOutputStream body = new DataOutputStream(bodyBytes);
+        body.writeInt(strings.index(name));
+
+        List<ItemModelBuilder> sortedItemModels = sorted(itemModels, ItemModelBuilder::getPath);
+        body.writeInt(sortedItemModels.size());
+        for (ItemModelBuilder itemModel : sortedItemModels) {
+            if (itemModel instanceof DefaultItemModelBuilder) {
+                body.writeByte(DEFAULT_ITEM_MODEL);
+                body.writeInt(strings.index(itemModel.getPath()));
+                body.writeInt(strings.index(((DefaultItemModelBuilder) itemModel).getMesh()));
+                writeStrings(body, strings, itemModel.getTargetItems());
+            } else if (itemModel instanceof CombinedItemModelBuilder) {
+                CombinedItemModelBuilder combinedModel = (CombinedItemModelBuilder) itemModel;
+                body.writeByte(COMBINED_ITEM_MODEL);
+                body.writeInt(strings.index(itemModel.getPath()));
+                body.writeInt(strings.index(combinedModel.getMesh()));
+                writeStrings(body, strings, itemModel.getTargetItems());
+                writeStrings(body, strings, combinedModel.getElements());
+                writeConstraints(body, strings, combinedModel.getConstraints());
+            } else if (itemModel instanceof SlotItemModelBuilder) {
+                SlotItemModelBuilder slotModel = (SlotItemModelBuilder) itemModel;
+                body.writeByte(SLOT_ITEM_MODEL);
+                body.writeInt(strings.index(itemModel.getPath()));
+                body.writeInt(strings.index(slotModel.getMesh()));
+                writeStrings(body, strings, itemModel.getTargetItems());
+                List<SlotItemModel.Slot> slots = sorted(slotModel.getSlots().values(), SlotItemModel.Slot::getName);
+                body.writeInt(slots.size());
+                for (SlotItemModel.Slot slot : slots) {
+                    body.writeInt(strings.index(slot.getName()));
+                    writeStrings(body, strings, slot.getEntries());
+                }
+            } else {
+                throw new IllegalArgumentException("Unsupported item model type " + itemModel.getClass().getName());
+            }
+        }
+
+        List<SoundAssetBuilder> sortedSounds = sorted(sounds, SoundAssetBuilder::getPath);
+        body.writeInt(sortedSounds.size());
+        for (SoundAssetBuilder sound : sortedSounds) {
+            body.writeInt(strings.index(sound.getPath()));
+            body.writeInt(strings.index(sound.getSoundPath()));
+        }
+
+        List<ArmorTextureBuilder> sortedArmorTextures = sorted(armorTextures, ArmorTextureBuilder::getPath);
+        body.writeInt(sortedArmorTextures.size());
+        for (ArmorTextureBuilder armorTexture : sortedArmorTextures) {
+            body.writeInt(strings.index(armorTexture.getPath()));
+            body.writeInt(armorTexture.getColor().getRGB() & 0xFFFFFF);
+            body.writeByte((armorTexture.hasLayer1() ? 1 : 0) | (armorTexture.hasLayer2() ? 2 : 0));
+        }
+
+        List<FontBuilder> sortedFonts = sorted(fonts, FontBuilder::getPath);
+        body.writeInt(sortedFonts.size());
+        for (FontBuilder font : sortedFonts) {
+            body.writeInt(strings.index(font.getPath()));
+            body.writeInt(strings.index(font.getFontPath()));
+        }
+
+        List<Key> itemIds = sorted(meshMapping.keySet(), Key::toString);
+        ByteArrayOutputStream entriesBytes = new ByteArrayOutputStream();
+        DataOutputStream entries = new DataOutputStream(entriesBytes);
+        body.writeInt(itemIds.size());
+        for (Key itemId : itemIds) {
+            body.writeInt(strings.index(itemId));
+            body.writeInt(entries.size());
+            List<Map.Entry<Path, Integer>> mapping = new ArrayList<>(meshMapping.get(itemId).entrySet());
+            // aliases share custom model data, the path keeps their order stable
+            mapping.sort(Map.Entry.<Path, Integer>comparingByValue().thenComparing(entry -> entry.getKey().toString()));
+            entries.writeInt(mapping.size());
+            for (Map.Entry<Path, Integer> entry : mapping) {
+                entries.writeInt(strings.index(entry.getKey()));
+                entries.writeInt(entry.getValue());
+            }
+        }
+        entriesBytes.writeTo(body);
+
+        DataOutputStream out = new DataOutputStream(outputStream);
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        strings.writeTo(out);
+        bodyBytes.writeTo(out);
+        out.flush();
+    }
+
+    private static void writeStrings(DataOutputStream out, StringTable strings, Collection<?> values) throws IOException {
+        List<String> sortedValues = new ArrayList<>(values.size());
+        for (Object value : values) {
+            sortedValues.add(value.toString());
+        }
+        Collections.sort(sortedValues);
+        out.writeInt(sortedValues.size());
+        for (String value : sortedValues) {
+            out.writeInt(strings.index(value));
+        }
+    }
+
+    private static void writeConstraints(DataOutputStream out, StringTable strings, CombinedItemModel.Constraints constraints) throws IOException {
+        out.writeInt(constraints.getMaxElements());
+        writeStringSets(out, strings, constraints.getExclusiveGroups());
+        writeStrings(out, strings, constraints.getRequired());
+        writeStringSets(out, strings, constraints.getWhitelist());
+    }
+
+    private static void writeStringSets(DataOutputStream out, StringTable strings, Collection<Set<String>> sets) throws IOException {
+        List<List<String>> sortedSets = new ArrayList<>(sets.size());
+        for (Set<String> set : sets) {
+            List<String> values = new ArrayList<>(set);
+            Collections.sort(values);
+            sortedSets.add(values);
+        }
+        sortedSets.sort(Comparator.comparing(Object::toString));
+        out.writeInt(sortedSets.size());
+        for (List<String> values : sortedSets) {
+            writeStrings(out, strings, values);
+        }
+    }
+
+    private static <T, K extends Comparable<? super K>> List<T> sorted(Collection<? extends T> values, Function<T, K> key) {
+        List<T> list = new ArrayList<>(values);
+        list.sort(Comparator.comparing(key));
+        return list;
+    }
+
+    public static @NotNull Resources read(@NotNull ByteBuffer buffer) {
+        return read(buffer, CustomModelLookup.DEFAULT_CACHE_SIZE);
+    }
+
+    public static @NotNull Resources read(@NotNull ByteBuffer buffer, int lookupCacheSize) {
+        ByteBuffer in = buffer.duplicate();
+        if (in.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Not a ProPack index");
+        }
+        int version = in.getShort() & 0xFFFF;
+        if (version < 1 || version > VERSION) {
+            throw new UnsupportedOperationException("Version " + version + " not supported");
+        }
+        MappedStrings strings = new MappedStrings(in);
+        strings.get(in.getInt()); // name
+
+        int itemModelCount = in.getInt();
+        List<ItemModelBuilder> itemModels = new ArrayList<>(itemModelCount);
+        for (int i = 0; i < itemModelCount; i++) {
+            byte type = in.get();
+            Path path = Path.of(strings.get(in.getInt()));
+            Path mesh = Path.of(strings.get(in.getInt()));
+            Set<Key> targetItems = new HashSet<>();
+            int targetCount = in.getInt();
+            for (int j = 0; j < targetCount; j++) {
+                targetItems.add(Key.of(strings.get(in.getInt())));
+            }
+            if (type == DEFAULT_ITEM_MODEL) {
+                itemModels.add(new DefaultItemModelBuilder(path).setMesh(mesh).setTargetItems(targetItems));
+            } else if (type == COMBINED_ITEM_MODEL) {
+                Set<String> elements = readStrings(in, strings);
+                CombinedItemModel.Constraints constraints = version < 2 ? CombinedItemModel.Constraints.NONE : readConstraints(in, strings);
+                itemModels.add(new CombinedItemModelBuilder(path).setMesh(mesh).setTargetItems(targetItems)
+                        .setElements(elements).setConstraints(constraints));
+            } else if (type == SLOT_ITEM_MODEL) {
+                int slotCount = in.getInt();
+                Map<String, SlotItemModel.Slot> slots = new HashMap<>();
+                for (int j = 0; j < slotCount; j++) {
+                    String slotName = strings.get(in.getInt());
+                    slots.put(slotName, new SlotItemModel.Slot(slotName, readStrings(in, strings)));
+                }
+                itemModels.add(new SlotItemModelBuilder(path).setMesh(mesh).setSlots(slots).setTargetItems(targetItems));
+            } else {
+                throw new IllegalArgumentException("Unknown item model type " + type);
+            }
+        }
+
+        int soundCount = in.getInt();
+        List<SoundAssetBuilder> sounds = new ArrayList<>(soundCount);
+        for (int i = 0; i < soundCount; i++) {
+            Path path = Path.of(strings.get(in.getInt()));
+            sounds.add(new SoundAssetBuilder(path).setSoundPath(Path.of(strings.get(in.getInt()))));
+        }
+
+        int armorTextureCount = in.getInt();
+        List<ArmorTextureBuilder> armorTextures = new ArrayList<>(armorTextureCount);
+        for (int i = 0; i < armorTextureCount; i++) {
+            Path path = Path.of(strings.get(in.getInt()));
+            Color color = new Color(in.getInt());
+            byte layers = in.get();
+            armorTextures.add(new ArmorTextureBuilder(path)
+                    .setColor(color).setHasLayer1((layers & 1) != 0).setHasLayer2((layers & 2) != 0));
+        }
+
+        int fontCount = in.getInt();
+        List<FontBuilder> fonts = new ArrayList<>(fontCount);
+        for (int i = 0; i < fontCount; i++) {
+            Path path = Path.of(strings.get(in.getInt()));
+            fonts.add(new FontBuilder(path).setFontPath(Path.of(strings.get(in.getInt()))));
+        }
+
+        MappedMeshes meshes = new MappedMeshes(in, strings);
+
+        return ResourcesCreator.create(itemModels, sounds, armorTextures, fonts, meshes, lookupCacheSize);
+    }
+
+    private static Set<String> readStrings(ByteBuffer in, MappedStrings strings) {
+        int count = in.getInt();
+        Set<String> output = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            output.add(strings.get(in.getInt()));
+        }
+        return output;
+    }
+
+    private static CombinedItemModel.Constraints readConstraints(ByteBuffer in, MappedStrings strings) {
+        int maxElements = in.getInt();
+        List<Set<String>> exclusiveGroups = readStringSets(in, strings);
+        Set<String> required = readStrings(in, strings);
+        List<Set<String>> whitelist = readStringSets(in, strings);
+        return new CombinedItemModel.Constraints(maxElements, exclusiveGroups, required, whitelist);
+    }
+
+    private static List<Set<String>> readStringSets(ByteBuffer in, MappedStrings strings) {
+        int count = in.getInt();
+        List<Set<String>> output = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            output.add(readStrings(in, strings));
+        }
+        return output;
+    }
+
+    private static class StringTable {
+        private final Map<String, Integer> indexes = new LinkedHashMap<>();
+
+        public int index(@NotNull Object value) {
+            return indexes.computeIfAbsent(value.toString(), s -> indexes.size());
+        }
+
+        public void writeTo(@NotNull DataOutputStream out) throws IOException {
+            List<byte[]> encoded = new ArrayList<>(indexes.size());
+            for (String string : indexes.keySet()) {
+                encoded.add(string.getBytes(StandardCharsets.UTF_8));
+            }
+            out.writeInt(encoded.size());
+            int offset = 0;
+            out.writeInt(offset);
+            for (byte[] bytes : encoded) {
+                offset += bytes.length;
+                out.writeInt(offset);
+            }
+            for (byte[] bytes : encoded) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    // Reads from absolute positions only, so lookups are safe from any thread
+    private static class MappedStrings {
+        private final ByteBuffer buffer;
+        private final int offsetsStart;
+        private final int dataStart;
+        private final String[] decoded;
+
+        private MappedStrings(@NotNull ByteBuffer in) {
+            this.buffer = in.duplicate();
+            int count = in.getInt();
+            this.offsetsStart = in.position();
+            this.dataStart = offsetsStart + (count + 1) * 4;
+            this.decoded = new String[count];
+            in.position(dataStart + buffer.getInt(offsetsStart + count * 4));
+        }
+
+        public @NotNull String get(int index) {
+            String string = decoded[index];
+            if (string == null) {
+                int start = buffer.getInt(offsetsStart + index * 4);
+                int end = buffer.getInt(offsetsStart + (index + 1) * 4);
+                byte[] bytes = new byte[end - start];
+                for (int i = 0; i < bytes.length; i++) {
+                    bytes[i] = buffer.get(dataStart + start + i);
+                }
+                string = new String(bytes, StandardCharsets.UTF_8);
+                decoded[index] = string;
+            }
+            return string;
+        }
+    }
+
+    private static class MappedMeshes implements Meshes {
+        private final ByteBuffer buffer;
+        private final MappedStrings strings;
+        private final Map<Key, Integer> offsets = new HashMap<>();
+        private final Map<Key, Map<Path, Integer>> decoded = new ConcurrentHashMap<>();
+
+        private MappedMeshes(@NotNull ByteBuffer in, @NotNull MappedStrings strings) {
+            this.buffer = in.duplicate();
+            this.strings = strings;
+            int itemCount = in.getInt();
+            int[] relativeOffsets = new int[itemCount];
+            Key[] itemIds = new Key[itemCount];
+            for (int i = 0; i < itemCount; i++) {
+                itemIds[i] = Key.of(strings.get(in.getInt()));
+                relativeOffsets[i] = in.getInt();
+            }
+            int entriesStart = in.position();
+            for (int i = 0; i < itemCount; i++) {
+                offsets.put(itemIds[i], entriesStart + relativeOffsets[i]);
+            }
+        }
+
+        @Override
+        public @Nullable Integer getCustomModelData(@NotNull Path mesh, @NotNull Key itemId) {
+            Integer offset = offsets.get(itemId);
+            if (offset == null) return null;
+            return decoded.computeIfAbsent(itemId, key -> decode(offset)).get(mesh);
+        }
+
+        private Map<Path, Integer> decode(int offset) {
+            int count = buffer.getInt(offset);
+            Map<Path, Integer> map = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                int entry = offset + 4 + i * 8;
+                map.put(Path.of(strings.get(buffer.getInt(entry))), buffer.getInt(entry + 4));
+            }
+            return map;
+        }
+    }
+
+    private ProPackIndexFormat() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -21,98 +21,169 @@ package me.nelonn.propack.core.util;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.*;
-
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazy combination generators. Every combination is numbered and decoded from its index on demand,
+ * so streams never hold the full set and split by index ranges for parallel processing.
+ */
 public final class CombinationUtil {
-    // Test
-    public static void main(String[] args) {
-        Map<String, List<String>> slots = new HashMap<>();
-        List<String> slot1 = new ArrayList<>();
-        slot1.add("A_1");
-        slot1.add("A_2");
-        slot1.add("A_3");
-        slots.put("s1", slot1);
-        List<String> slot2 = new ArrayList<>();
-        slot2.add("BB_1");
-        slot2.add("BB_2");
-        slot2.add("BB_3");
-        slots.put("s2", slot2);
-        List<String> slot3 = new ArrayList<>();
-        slot3.add("CCC_1");
-        slot3.add("CCC_2");
-        slot3.add("CCC_3");
-        slots.put("s3", slot3);
-
-        List<Map<String, String>> combinations = generateSlotCombinations(slots);
-        List<String> out = new ArrayList<>();
-        for (Map<String, String> combination : combinations) {
-            out.add("s1:" + combination.get("s1") + "&s2:" + combination.get("s2") + "&s3:" + combination.get("s3"));
-        }
-        System.out.println(out);
-        System.out.println(generateAllCombinations(new String[]{"AAA_1", "BB_1", "C_1"}));
+    /**
+     * Every non-empty subset of the values, elements keep their order in the list.
+     * Subset {@code i} contains the values whose bit is set in {@code i}.
+     */
+    public static <T> @NotNull Stream<List<T>> subsets(@NotNull List<T> values) {
+        return StreamSupport.stream(subsetSpliterator(values), false);
     }
 
-    public static @NotNull List<List<String>> generateAllCombinations(@NotNull String[] args) {
-        return generateAllCombinations(Arrays.asList(args));
+    public static <T> @NotNull Spliterator<List<T>> subsetSpliterator(@NotNull List<T> values) {
+        if (values.size() > 62) {
+            throw new IllegalArgumentException("Too many elements to combine: " + values.size());
+        }
+        List<T> elements = new ArrayList<>(values);
+        return new IndexSpliterator<>(1, 1L << elements.size(), index -> {
+            List<T> combination = new ArrayList<>(Long.bitCount(index));
+            for (long bits = index; bits != 0; bits &= bits - 1) {
+                combination.add(elements.get(Long.numberOfTrailingZeros(bits)));
+            }
+            return combination;
+        });
     }
 
-    public static @NotNull List<List<String>> generateAllCombinations(@NotNull Collection<String> args) {
-        List<List<String>> output = new LinkedList<>();
-        for (int i = 1; i <= args.size(); i++) {
-            output.addAll(combination(args, i));
-        }
-        return output;
+    /**
+     * Every non-empty subset with at most {@code maxSize} values, smaller subsets first.
+     * Subsets of one size are ranked in lexicographic order of value indexes, so only
+     * the allowed subsets are visited instead of filtering all {@code 2^n - 1}.
+     */
+    public static <T> @NotNull Stream<List<T>> subsets(@NotNull List<T> values, int maxSize) {
+        return StreamSupport.stream(subsetSpliterator(values, maxSize), false);
     }
 
-    public static <T> List<List<T>> combination(Collection<T> values, int size) {
-        if (size == 0) {
-            return Collections.singletonList(Collections.emptyList());
+    public static <T> @NotNull Spliterator<List<T>> subsetSpliterator(@NotNull List<T> values, int maxSize) {
+        if (maxSize >= values.size()) return subsetSpliterator(values);
+        List<T> elements = new ArrayList<>(values);
+        int n = elements.size();
+        int k = Math.max(maxSize, 0);
+        // binomial[m][r] = m choose r
+        long[][] binomial = new long[n + 1][k + 1];
+        for (int m = 0; m <= n; m++) {
+            binomial[m][0] = 1;
+            for (int r = 1; r <= Math.min(m, k); r++) {
+                binomial[m][r] = addExact(binomial[m - 1][r - 1], binomial[m - 1][r]);
+            }
         }
+        long total = 0;
+        for (int size = 1; size <= k; size++) {
+            total = addExact(total, binomial[n][size]);
+        }
+        return new IndexSpliterator<>(0, total, index -> {
+            long rank = index;
+            int size = 1;
+            while (rank >= binomial[n][size]) {
+                rank -= binomial[n][size++];
+            }
+            List<T> combination = new ArrayList<>(size);
+            int next = 0;
+            for (int remaining = size; remaining > 0; remaining--) {
+                // skip candidates while the rank is past every subset starting with them
+                while (rank >= binomial[n - next - 1][remaining - 1]) {
+                    rank -= binomial[n - next - 1][remaining - 1];
+                    next++;
+                }
+                combination.add(elements.get(next++));
+            }
+            return combination;
+        });
+    }
 
-        if (values.isEmpty()) {
-            return Collections.emptyList();
+    private static long addExact(long a, long b) {
+        try {
+            return Math.addExact(a, b);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Too many combinations", e);
         }
+    }
 
-        List<List<T>> combination = new LinkedList<>();
+    /**
+     * Every assignment of at most one element per slot except the one where all slots are empty.
+     * Result lists are aligned with the slots, {@code null} marks an empty slot.
+     * Assignments are counted in mixed radix where digit 0 of a slot means empty.
+     */
+    public static <T> @NotNull Stream<List<T>> slotCombinations(@NotNull List<? extends List<T>> slots) {
+        return StreamSupport.stream(slotSpliterator(slots), false);
+    }
 
-        T actual = values.iterator().next();
+    public static <T> @NotNull Spliterator<List<T>> slotSpliterator(@NotNull List<? extends List<T>> slots) {
+        List<List<T>> elements = new ArrayList<>(slots.size());
+        long total = 1;
+        for (List<T> slot : slots) {
+            elements.add(new ArrayList<>(slot));
+            try {
+                total = Math.multiplyExact(total, slot.size() + 1L);
+            } catch (ArithmeticException e) {
+                throw new IllegalArgumentException("Too many slot combinations", e);
+            }
+        }
+        return new IndexSpliterator<>(1, total, index -> {
+            List<T> combination = new ArrayList<>(elements.size());
+            long rest = index;
+            for (List<T> slot : elements) {
+                int radix = slot.size() + 1;
+                int digit = (int) (rest % radix);
+                rest /= radix;
+                combination.add(digit == 0 ? null : slot.get(digit - 1));
+            }
+            return combination;
+        });
+    }
 
-        List<T> subSet = new LinkedList<>(values);
-        subSet.remove(actual);
+    private static final class IndexSpliterator<T> implements Spliterator<T> {
+        private final LongFunction<T> decoder;
+        private long origin;
+        private final long fence;
 
-        List<List<T>> subSetCombination = combination(subSet, size - 1);
+        private IndexSpliterator(long origin, long fence, LongFunction<T> decoder) {
+            this.decoder = decoder;
+            this.origin = origin;
+            this.fence = fence;
+        }
 
-        for (List<T> set : subSetCombination) {
-            List<T> newSet = new LinkedList<>(set);
-            newSet.add(0, actual);
-            combination.add(newSet);
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (origin >= fence) return false;
+            action.accept(decoder.apply(origin++));
+            return true;
         }
 
-        combination.addAll(combination(subSet, size));
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            long index = origin;
+            origin = fence;
+            for (; index < fence; index++) {
+                action.accept(decoder.apply(index));
+            }
+        }
 
-        return combination;
-    }
+        @Override
+        public Spliterator<T> trySplit() {
+            long mid = (origin + fence) >>> 1;
+            if (mid <= origin) return null;
+            Spliterator<T> prefix = new IndexSpliterator<>(origin, mid, decoder);
+            origin = mid;
+            return prefix;
+        }
 
-    public static <T> @NotNull List<Map<String, T>> generateSlotCombinations(@NotNull Map<String, List<T>> slots) {
-        List<Map<String, T>> output = new ArrayList<>();
-        if (slots.isEmpty()) return output;
-        slotCombinations(slots, output, slots.keySet().stream().findFirst().get(), new HashMap<>());
-        return output;
-    }
+        @Override
+        public long estimateSize() {
+            return Math.max(0, fence - origin);
+        }
 
-    private static <T> void slotCombinations(Map<String, List<T>> slots, List<Map<String, T>> output,
-                                             String previousSlot, Map<String, T> previousCombination) {
-        List<String> keySet = new ArrayList<>(slots.keySet());
-        if (keySet.indexOf(previousSlot) >= keySet.size()) return;
-        List<T> elements = new ArrayList<>(slots.get(previousSlot));
-        elements.add(null);
-        for (T element : elements) {
-            Map<String, T> combination = new HashMap<>(previousCombination);
-            combination.put(previousSlot, element);
-            if ((keySet.indexOf(previousSlot) + 1) == keySet.size()) {
-                output.add(combination);
-            } else {
-                slotCombinations(slots, output, keySet.get(keySet.indexOf(previousSlot) + 1), combination);
-            }
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
         }
     }
 
@@ -120,4 +191,4 @@ public final class CombinationUtil {
         throw new UnsupportedOperationException();
     }
 
-}
\ No newline at end of file
+}
@@ -19,8 +19,11 @@
 package me.nelonn.propack.core.util;
 
 import com.google.gson.*;
+import com.google.gson.internal.LazilyParsedNumber;
 import com.google.gson.reflect.TypeToken;
 import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 import org.apache.commons.lang3.StringUtils;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.Nullable;
@@ -28,8 +31,16 @@ import org.jetbrains.annotations.Nullable;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
+import java.io.Writer;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 public final class GsonHelper {
     private static final Gson GSON = new GsonBuilder().setLenient().create();
@@ -452,6 +463,93 @@ public final class GsonHelper {
         return deserialize(GSON, reader, JsonArray.class, false);
     }
 
+    /**
+     * @return deep copy with the keys of every object sorted, so equal content always serializes the same
+     */
+    public static JsonElement sortKeys(JsonElement element) {
+        if (element.isJsonObject()) {
+            JsonObject object = element.getAsJsonObject();
+            List<String> keys = new ArrayList<>(object.keySet());
+            Collections.sort(keys);
+            JsonObject sorted = new JsonObject();
+            for (String key : keys) {
+                sorted.add(key, sortKeys(object.get(key)));
+            }
+            return sorted;
+        } else if (element.isJsonArray()) {
+            JsonArray sorted = new JsonArray();
+            for (JsonElement child : element.getAsJsonArray()) {
+                sorted.add(sortKeys(child));
+            }
+            return sorted;
+        }
+        return element;
+    }
+
+    /**
+     * Streams a leniently read object to compact json without building the tree.
+     * The output is the same as {@link #deserialize(Reader, boolean)} followed by {@link JsonElement#toString()}.
+     * @return false if the source is not an object or has duplicate keys, the output is incomplete then
+     */
+    public static boolean writeCompact(Reader source, Writer output) throws IOException {
+        JsonReader reader = new JsonReader(source);
+        reader.setLenient(true);
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) return false;
+        JsonWriter writer = new JsonWriter(output);
+        writer.setLenient(true);
+        // names of the open objects, a duplicate key would collapse in the tree
+        Deque<Set<String>> names = new ArrayDeque<>();
+        int depth = 0;
+        do {
+            switch (reader.peek()) {
+                case BEGIN_OBJECT:
+                    reader.beginObject();
+                    writer.beginObject();
+                    names.push(new HashSet<>());
+                    depth++;
+                    break;
+                case END_OBJECT:
+                    reader.endObject();
+                    writer.endObject();
+                    names.pop();
+                    depth--;
+                    break;
+                case BEGIN_ARRAY:
+                    reader.beginArray();
+                    writer.beginArray();
+                    depth++;
+                    break;
+                case END_ARRAY:
+                    reader.endArray();
+                    writer.endArray();
+                    depth--;
+                    break;
+                case NAME:
+                    String name = reader.nextName();
+                    if (!names.peek().add(name)) return false;
+                    writer.name(name);
+                    break;
+                case STRING:
+                    writer.value(reader.nextString());
+                    break;
+                case NUMBER:
+                    writer.value(new LazilyParsedNumber(reader.nextString()));
+                    break;
+                case BOOLEAN:
+                    writer.value(reader.nextBoolean());
+                    break;
+                case NULL:
+                    reader.nextNull();
+                    writer.nullValue();
+                    break;
+                default:
+                    throw new JsonParseException("Unexpected " + reader.peek() + " at " + reader.getPath());
+            }
+        } while (depth > 0);
+        writer.flush();
+        return true;
+    }
+
     private GsonHelper() {
         throw new UnsupportedOperationException();
     }
@@ -0,0 +1,187 @@
+/*
+ * This file is part of ProPack, a Minecraft resource pack toolkit
+ * Copyright (C) Michael Neonov <two.nelonn@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.nelonn.propack.core.loader;
+
+import me.nelonn.flint.path.Key;
+import me.nelonn.flint.path.Path;
+import me.nelonn.propack.Resources;
+import me.nelonn.propack.asset.*;
+import me.nelonn.propack.core.asset.*;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProPackIndexFormatTest {
+    private static final Key PAPER = Key.of("minecraft:paper");
+    private static final Key STICK = Key.of("minecraft:stick");
+
+    private static final CombinedItemModel.Constraints CONSTRAINTS = new CombinedItemModel.Constraints(2,
+            Collections.singletonList(new HashSet<>(Arrays.asList("cheese", "tomato"))),
+            Collections.singleton("bread"),
+            Collections.emptySet());
+
+    private static Set<String> set(String... values) {
+        return new HashSet<>(Arrays.asList(values));
+    }
+
+    private static void skipStrings(ByteBuffer in) {
+        int count = in.getInt();
+        in.position(in.position() + count * 4);
+    }
+
+    private static byte[] write(Collection<ItemModelBuilder> itemModels, Map<Key, Map<Path, Integer>> meshMapping) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ProPackIndexFormat.write(out, "example", itemModels,
+                Collections.singletonList(new SoundAssetBuilder(Path.of("example:music/theme"))
+                        .setSoundPath(Path.of("o:1"))),
+                Collections.singletonList(new ArmorTextureBuilder(Path.of("example:armor/emerald"))
+                        .setColor(new Color(0x123456)).setHasLayer1(true).setHasLayer2(false)),
+                Collections.singletonList(new FontBuilder(Path.of("example:font/icons"))
+                        .setFontPath(Path.of("o:2"))),
+                meshMapping);
+        return out.toByteArray();
+    }
+
+    private static Map<Key, Map<Path, Integer>> meshMapping() {
+        Map<Path, Integer> paper = new HashMap<>();
+        paper.put(Path.of("example:item/sandwich"), 1);
+        paper.put(Path.of("example:item/sandwich-1"), 2);
+        // alias sharing the custom model data of its canonical mesh
+        paper.put(Path.of("example:item/sandwich-2"), 2);
+        Map<Key, Map<Path, Integer>> meshMapping = new HashMap<>();
+        meshMapping.put(PAPER, paper);
+        meshMapping.put(STICK, Collections.singletonMap(Path.of("example:item/slots"), 7));
+        return meshMapping;
+    }
+
+    private static List<ItemModelBuilder> itemModels(CombinedItemModel.Constraints constraints) {
+        Map<String, SlotItemModel.Slot> slots = new HashMap<>();
+        slots.put("top", new SlotItemModel.Slot("top", set("cheese", "tomato")));
+        slots.put("bottom", new SlotItemModel.Slot("bottom", set("bread")));
+        return Arrays.asList(
+                new DefaultItemModelBuilder(Path.of("example:item/tomato"))
+                        .setMesh(Path.of("example:item/tomato")).setTargetItems(Collections.singleton(PAPER)),
+                new CombinedItemModelBuilder(Path.of("example:item/sandwich"))
+                        .setMesh(Path.of("example:item/sandwich")).setTargetItems(Collections.singleton(PAPER))
+                        .setElements(set("bread", "cheese", "tomato")).setConstraints(constraints),
+                new SlotItemModelBuilder(Path.of("example:item/slots"))
+                        .setMesh(Path.of("example:item/slots")).setSlots(slots)
+                        .setTargetItems(new HashSet<>(Arrays.asList(PAPER, STICK))));
+    }
+
+    @Test
+    void roundTrip() throws IOException {
+        byte[] bytes = write(itemModels(CONSTRAINTS), meshMapping());
+        assertTrue(ProPackIndexFormat.isIndex(ByteBuffer.wrap(bytes)));
+        Resources resources = ProPackIndexFormat.read(ByteBuffer.wrap(bytes));
+
+        DefaultItemModel tomato = (DefaultItemModel) resources.itemModel(Path.of("example:item/tomato"));
+        assertNotNull(tomato);
+        assertEquals(Path.of("example:item/tomato"), tomato.getMesh());
+        assertEquals(Collections.singleton(PAPER), tomato.getTargetItems());
+
+        CombinedItemModel sandwich = (CombinedItemModel) resources.itemModel(Path.of("example:item/sandwich"));
+        assertNotNull(sandwich);
+        assertEquals(set("bread", "cheese", "tomato"), sandwich.getElements());
+        assertEquals(CONSTRAINTS, sandwich.getConstraints());
+
+        SlotItemModel slotModel = (SlotItemModel) resources.itemModel(Path.of("example:item/slots"));
+        assertNotNull(slotModel);
+        assertEquals(new HashSet<>(Arrays.asList(PAPER, STICK)), slotModel.getTargetItems());
+        assertEquals(set("cheese", "tomato"), slotModel.getSlot("top").getEntries());
+        assertEquals(set("bread"), slotModel.getSlot("bottom").getEntries());
+
+        SoundAsset sound = resources.sound(Path.of("example:music/theme"));
+        assertNotNull(sound);
+        assertEquals(Path.of("o:1"), sound.realPath());
+        ArmorTexture armorTexture = resources.armorTexture(Path.of("example:armor/emerald"));
+        assertNotNull(armorTexture);
+        assertEquals(0x123456, armorTexture.getColor().getRGB() & 0xFFFFFF);
+        assertTrue(armorTexture.hasLayer1());
+        assertFalse(armorTexture.hasLayer2());
+        Font font = resources.font(Path.of("example:font/icons"));
+        assertNotNull(font);
+        assertEquals(Path.of("o:2"), font.realPath());
+
+        assertEquals(Integer.valueOf(1), resources.getMeshes().getCustomModelData(Path.of("example:item/sandwich"), PAPER));
+        assertEquals(Integer.valueOf(2), resources.getMeshes().getCustomModelData(Path.of("example:item/sandwich-1"), PAPER));
+        assertEquals(Integer.valueOf(2), resources.getMeshes().getCustomModelData(Path.of("example:item/sandwich-2"), PAPER));
+        assertEquals(Integer.valueOf(7), resources.getMeshes().getCustomModelData(Path.of("example:item/slots"), STICK));
+        assertNull(resources.getMeshes().getCustomModelData(Path.of("example:item/slots"), PAPER));
+        assertNull(resources.getMeshes().getCustomModelData(Path.of("example:item/sandwich"), Key.of("minecraft:apple")));
+    }
+
+    @Test
+    void writesSameBytesForSameContent() throws IOException {
+        List<ItemModelBuilder> reversed = new ArrayList<>(itemModels(CONSTRAINTS));
+        Collections.reverse(reversed);
+        assertArrayEquals(write(itemModels(CONSTRAINTS), meshMapping()), write(reversed, meshMapping()));
+    }
+
+    // Version 1 is version 2 without the constraints that end every combined item model
+    @Test
+    void readsVersion1() throws IOException {
+        byte[] bytes = write(itemModels(CombinedItemModel.Constraints.NONE), meshMapping());
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        in.position(6);
+        int stringCount = in.getInt();
+        int stringsLength = in.getInt(in.position() + stringCount * 4);
+        in.position(in.position() + (stringCount + 1) * 4 + stringsLength);
+        in.getInt(); // name
+        in.getInt(); // item model count
+        // models are sorted by path, the combined sandwich comes first
+        assertEquals(1, in.get());
+        in.getInt(); // path
+        in.getInt(); // mesh
+        skipStrings(in); // target items
+        skipStrings(in); // elements
+        int constraintsStart = in.position();
+        // maxElements and three empty collections
+        int constraintsLength = 16;
+        ByteBuffer version1 = ByteBuffer.allocate(bytes.length - constraintsLength);
+        version1.put(bytes, 0, constraintsStart);
+        version1.put(bytes, constraintsStart + constraintsLength, bytes.length - constraintsStart - constraintsLength);
+        version1.putShort(4, (short) 1);
+        version1.flip();
+
+        Resources resources = ProPackIndexFormat.read(version1);
+        CombinedItemModel sandwich = (CombinedItemModel) resources.itemModel(Path.of("example:item/sandwich"));
+        assertNotNull(sandwich);
+        assertEquals(set("bread", "cheese", "tomato"), sandwich.getElements());
+        assertEquals(CombinedItemModel.Constraints.NONE, sandwich.getConstraints());
+        assertNotNull(resources.itemModel(Path.of("example:item/slots")));
+        assertNotNull(resources.itemModel(Path.of("example:item/tomato")));
+        assertEquals(Integer.valueOf(2), resources.getMeshes().getCustomModelData(Path.of("example:item/sandwich-2"), PAPER));
+    }
+
+    @Test
+    void rejectsUnknownData() {
+        assertFalse(ProPackIndexFormat.isIndex(ByteBuffer.wrap(new byte[]{'{', '}'})));
+        assertThrows(IllegalArgumentException.class, () -> ProPackIndexFormat.read(ByteBuffer.wrap(new byte[8])));
+        ByteBuffer future = ByteBuffer.allocate(6).putInt(ProPackIndexFormat.MAGIC).putShort((short) (ProPackIndexFormat.VERSION + 1));
+        future.flip();
+        assertThrows(UnsupportedOperationException.class, () -> ProPackIndexFormat.read(future));
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * This file is part of ProPack, a Minecraft resource pack toolkit
+ * Copyright (C) Michael Neonov <two.nelonn@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.nelonn.propack.core.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CombinationUtilTest {
+    private static final List<String> VALUES = Arrays.asList("a", "b", "c", "d", "e");
+
+    private static <T> List<T> drain(Spliterator<T> spliterator) {
+        List<T> result = new ArrayList<>();
+        spliterator.forEachRemaining(result::add);
+        return result;
+    }
+
+    // splits down to single elements, prefixes first, so the result keeps encounter order
+    private static <T> List<T> drainSplit(Spliterator<T> spliterator) {
+        long size = spliterator.estimateSize();
+        Spliterator<T> prefix = spliterator.trySplit();
+        if (prefix == null) {
+            List<T> result = drain(spliterator);
+            assertEquals(size, result.size());
+            return result;
+        }
+        assertEquals(size, prefix.estimateSize() + spliterator.estimateSize());
+        List<T> result = drainSplit(prefix);
+        result.addAll(drainSplit(spliterator));
+        return result;
+    }
+
+    private static long binomial(int n, int k) {
+        long result = 1;
+        for (int i = 1; i <= k; i++) {
+            result = result * (n - k + i) / i;
+        }
+        return result;
+    }
+
+    @Test
+    void subsetsCoverEveryNonEmptySubsetOnce() {
+        List<List<String>> subsets = CombinationUtil.subsets(VALUES).collect(Collectors.toList());
+        assertEquals((1 << VALUES.size()) - 1, subsets.size());
+        assertEquals(subsets.size(), new HashSet<>(subsets).size());
+        assertEquals(Arrays.asList("a"), subsets.get(0));
+        assertEquals(Arrays.asList("a", "b"), subsets.get(2));
+        assertEquals(VALUES, subsets.get(subsets.size() - 1));
+        for (List<String> subset : subsets) {
+            assertFalse(subset.isEmpty());
+            List<String> sorted = new ArrayList<>(subset);
+            Collections.sort(sorted);
+            assertEquals(sorted, subset);
+        }
+    }
+
+    @Test
+    void limitedSubsetsAreRankedBySizeThenLexicographically() {
+        for (int maxSize = 0; maxSize <= VALUES.size() + 1; maxSize++) {
+            int limit = maxSize;
+            List<List<String>> expected = CombinationUtil.subsets(VALUES)
+                    .filter(subset -> subset.size() <= limit)
+                    .sorted(Comparator.<List<String>>comparingInt(List::size).thenComparing(Object::toString))
+                    .collect(Collectors.toList());
+            long count = 0;
+            for (int size = 1; size <= Math.min(maxSize, VALUES.size()); size++) {
+                count += binomial(VALUES.size(), size);
+            }
+            Spliterator<List<String>> spliterator = CombinationUtil.subsetSpliterator(VALUES, maxSize);
+            assertEquals(count, spliterator.estimateSize());
+            List<List<String>> actual = drain(spliterator);
+            assertEquals(count, actual.size());
+            if (maxSize < VALUES.size()) {
+                assertEquals(expected, actual);
+            } else {
+                assertEquals(new HashSet<>(expected), new HashSet<>(actual));
+            }
+        }
+    }
+
+    @Test
+    void slotCombinationsCountEveryAssignmentButEmpty() {
+        List<List<String>> slots = Arrays.asList(
+                Arrays.asList("a1", "a2", "a3"),
+                Arrays.asList("b1"),
+                Arrays.asList("c1", "c2"));
+        List<List<String>> combinations = CombinationUtil.slotCombinations(slots).collect(Collectors.toList());
+        assertEquals(4 * 2 * 3 - 1, combinations.size());
+        assertEquals(combinations.size(), new HashSet<>(combinations).size());
+        assertEquals(Arrays.asList("a1", null, null), combinations.get(0));
+        assertEquals(Arrays.asList(null, "b1", null), combinations.get(3));
+        assertEquals(Arrays.asList("a3", "b1", "c2"), combinations.get(combinations.size() - 1));
+        for (List<String> combination : combinations) {
+            assertEquals(slots.size(), combination.size());
+            assertTrue(combination.stream().anyMatch(Objects::nonNull));
+            for (int i = 0; i < slots.size(); i++) {
+                assertTrue(combination.get(i) == null || slots.get(i).contains(combination.get(i)));
+            }
+        }
+    }
+
+    @Test
+    void splitsCoverEveryIndexInOrder() {
+        assertEquals(drain(CombinationUtil.subsetSpliterator(VALUES)),
+                drainSplit(CombinationUtil.subsetSpliterator(VALUES)));
+        assertEquals(drain(CombinationUtil.subsetSpliterator(VALUES, 3)),
+                drainSplit(CombinationUtil.subsetSpliterator(VALUES, 3)));
+        List<List<String>> slots = Arrays.asList(VALUES, VALUES, VALUES);
+        assertEquals(drain(CombinationUtil.slotSpliterator(slots)),
+                drainSplit(CombinationUtil.slotSpliterator(slots)));
+    }
+
+    @Test
+    void parallelStreamMatchesSequential() {
+        List<List<String>> slots = Arrays.asList(VALUES, VALUES, VALUES, VALUES);
+        List<List<String>> sequential = CombinationUtil.slotCombinations(slots).collect(Collectors.toList());
+        List<List<String>> parallel = StreamSupport.stream(CombinationUtil.slotSpliterator(slots), true)
+                .collect(Collectors.toList());
+        assertEquals(sequential, parallel);
+    }
+
+    @Test
+    void emptyInputsHaveNoCombinations() {
+        assertEquals(0, CombinationUtil.subsetSpliterator(Collections.emptyList()).estimateSize());
+        assertEquals(0, CombinationUtil.subsetSpliterator(VALUES, 0).estimateSize());
+        assertEquals(0, CombinationUtil.slotSpliterator(Collections.<List<String>>emptyList()).estimateSize());
+    }
+
+    @Test
+    void rejectsTooManyCombinations() {
+        List<Integer> values = new ArrayList<>();
+        for (int i = 0; i < 63; i++) {
+            values.add(i);
+        }
+        assertThrows(IllegalArgumentException.class, () -> CombinationUtil.subsetSpliterator(values));
+        List<List<Integer>> slots = Collections.nCopies(20, values);
+        assertThrows(IllegalArgumentException.class, () -> CombinationUtil.slotSpliterator(slots));
+    }
+}